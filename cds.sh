@@ -0,0 +1,20 @@
+#!/bin/sh
+# Build a class data sharing archive for faster starts. Class data sharing only works with classes from a jar, so the
+# compiled classes are jarred first. Then the startup probe (open the menu, start a Medium game and click it) runs
+# once with -XX:ArchiveClassesAtExit, which dumps every class it loaded into the archive. Start with
+#   java -XX:SharedArchiveFile=minesweeper.jsa -cp minesweeper.jar com.vandeldt.minesweeper.Menu
+# Rebuild both whenever the classes or the JDK change; a stale archive is ignored with a warning.
+#
+# Usage: ./cds.sh [classes directory] [jar] [archive]
+set -e
+
+CLASSES=${1:-out/production/Minesweeper}
+JAR=${2:-minesweeper.jar}
+ARCHIVE=${3:-minesweeper.jsa}
+HOME_DIR=$(mktemp -d)
+trap 'rm -rf "$HOME_DIR"' EXIT
+
+jar --create --file "$JAR" -C "$CLASSES" .
+java -XX:ArchiveClassesAtExit="$ARCHIVE" -Duser.home="$HOME_DIR" -cp "$JAR" \
+    com.vandeldt.minesweeper.bench.StartupBenchmarks probe M > /dev/null
+echo "Wrote $JAR and $ARCHIVE"
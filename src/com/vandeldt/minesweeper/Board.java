@@ -1,221 +1,849 @@
 package com.vandeldt.minesweeper;
 
+import com.vandeldt.minesweeper.metrics.Metrics;
+import com.vandeldt.minesweeper.solver.Heatmap;
+import com.vandeldt.minesweeper.solver.NoGuessBoard;
+import com.vandeldt.minesweeper.solver.NoGuessPool;
+import com.vandeldt.minesweeper.solver.Probabilities;
+import com.vandeldt.minesweeper.solver.Solver;
+
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.util.Random;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+public class Board extends JPanel implements Scrollable {
+
+    // Listener for the counters shown alongside the board.
+    public interface StatusListener {
+        void statusChanged(int flags_remaining, int num_revealed);
+    }
+
+    // Boards with more cells than this are painted as one component rather than a grid of Cell buttons.
+    static final int PAINTED_THRESHOLD = 10_000;
+
+    // Cell buttons are made this many at a time, one batch per event, so that a big grid shows and can be played
+    // while the rest of it is still being built.
+    static final int CELL_BATCH = 1000;
 
-public class Board extends JPanel {
+    // Cell sizes the painted board can be zoomed between.
+    static final int[] ZOOM_LEVELS = {6, 8, 12, 16, 20, Cell.CELL_WIDTH, 32, 40, 52};
+    static final int DEFAULT_ZOOM = 5;
+
+    // How long the engine may spend on mine probabilities after each action while the heatmap is shown, and the
+    // colours it is drawn in, from green (safe) to red (mine).
+    private static final long HEATMAP_BUDGET = 100;
+    private static final Color[] HEAT_COLORS = new Color[101];
+    static {
+        for (int i = 0; i <= 100; i++) {
+            HEAT_COLORS[i] = new Color(255 * i / 100, 255 * (100 - i) / 100, 0, 110);
+        }
+    }
 
-    // Initialise board attributes.
-    public static int num_revealed = 0;
-    public static int flags_remaining;
-    private final int board_height, board_width, num_mines;
-    private boolean game_over = false;
+    // Initialise board attributes. The counters are the last ones published by this board's game.
+    private int num_revealed = 0;
+    private int flags_remaining;
+    private final int board_height, board_width;
+    private final Game game;
+    private final GameEngine engine;
     private final Cell[][] cells;
 
+    // What every cell shows, as a tile (see Cell.tile), from the changes the engine thread has published. Painting and
+    // the Cell buttons only ever read this, never the game, which the engine thread may be changing at the time.
+    private byte[] tiles;
+
+    private int zoom = DEFAULT_ZOOM;
+    private int cell_size = ZOOM_LEVELS[DEFAULT_ZOOM];
+    private StatusListener status_listener;
+
+    // Solver following the game on the engine thread, made the first time it's needed (see solver()), and the hint it
+    // last gave (-1 for none).
+    private Solver solver;
+    private int hint = -1;
+    private boolean hint_mine;
+
+    // Mine probabilities, worked out on the engine thread while heatmap_on is set there, and the last ones published.
+    // What works them out keeps about 28 bytes per cell, so it only exists while the heatmap is shown.
+    private Probabilities probabilities;
+    private boolean heatmap_on = false;
+    private Heatmap heatmap;
+
+    // Source of boards that never need a guess (null for ordinary games), and the start cell of the current one, which
+    // the engine thread opens once the board is set up.
+    private final NoGuessPool no_guess_pool;
+    private int no_guess_start = -1;
+
+    // Every move of the current game, for undo and redo (engine thread only), and the file it is streamed to.
+    private final Journal journal;
+    private JournalFile journal_file;
+
+    // Debug overlay showing the metrics, redrawn every so often while it is shown.
+    private final Timer metrics_timer = new Timer(500, e -> repaint(getVisibleRect()));
+
     // Constructor
     public Board(int height, int width, int mines) {
+        this(height, width, mines, height * width > PAINTED_THRESHOLD);
+    }
 
-        // Set attributes
-        this.board_height = height;
-        this.board_width = width;
-        this.num_mines = mines;
+    public Board(int height, int width, int mines, boolean painted) {
+        this(height, width, mines, painted, false);
+    }
+
+    // Create the game model, which places the mines so that the game can begin. Boards without guessing are safe zone
+    // games, as that is how they were checked.
+    public Board(int height, int width, int mines, boolean painted, boolean no_guess) {
+        this(new Game(height, width, mines, new SplittableRandom().nextLong(), no_guess), painted,
+                no_guess ? NoGuessPool.forConfig(height, width, mines) : null);
+
+        if (no_guess_pool != null) {
+            reset();
+        } else {
+            long time = System.currentTimeMillis();
+            engine.submit(game -> journal.start(game.getSeed(), time));
+        }
+    }
 
-        this.cells = new Cell[board_height][board_width];
+    // Carry on with a game already under way, e.g. one loaded from a file.
+    public Board(Game game, boolean painted) {
+        this(game, painted, null);
 
-        flags_remaining = mines;
+        long time = System.currentTimeMillis();
+        this.engine.submit(loaded -> journal.resume(loaded, time));
+    }
 
-        // Set layout of panel so cells display properly.
-        this.setLayout(new GridLayout(board_height, board_width));
+    private Board(Game game, boolean painted, NoGuessPool no_guess_pool) {
 
-        // Nested loop to create and add each cell to the panel. (row i, col j)
-        for (int i = 0; i < board_height; i++) {
-            for (int j = 0; j < board_width; j++) {
+        // Set attributes
+        this.board_height = game.getHeight();
+        this.board_width = game.getWidth();
+
+        // Only the engine thread changes the game from here on, and we draw whatever it publishes.
+        this.game = game;
+        this.engine = new GameEngine(game, SwingUtilities::invokeLater, this::apply);
+        this.engine.addObserver(changes -> {
+            publishTiles(changes);
+            if (solver != null) {
+                solver.update(changes);
+            }
+            if (heatmap_on) {
+                publishHeatmap();
+            }
+        });
+        this.no_guess_pool = no_guess_pool;
+
+        // The journal file is created on the engine thread, ahead of any move, so the window doesn't wait for the disk.
+        this.journal = new Journal(board_height, board_width, game.getNumMines(), game.isSafeZone());
+        this.engine.submit(started -> {
+            try {
+                journal_file = JournalFile.create(board_height, board_width, started.getNumMines(),
+                        started.isSafeZone());
+                journal.setFile(journal_file);
+            } catch (IOException e) {
+                System.err.println("Journal not saved: " + e.getMessage());
+            }
+        });
 
-                // Create new cell in array
-                this.cells[i][j] = new Cell();
+        num_revealed = game.getNumRevealed();
+        flags_remaining = game.getFlagsRemaining();
 
-                // Add listener so we can click cells.
-                this.cells[i][j].addMouseListener(new MouseListener() {
-                    // We only need mousePressed.
-                    public void mousePressed(MouseEvent e) {
-                        // Find out which cell has been clicked and by which mouse button.
-                        Cell trigger = (Cell) e.getSource();
-                        int mouse_button = e.getButton();
+        // Nothing has changed the game yet, so it can still be read here. A new game is all hidden cells, tile 0.
+        this.tiles = new byte[board_height * board_width];
+        if (game.getNumRevealed() > 0 || game.getFlagsRemaining() != game.getNumMines() || game.isGameOver()) {
+            for (int i = 0; i < tiles.length; i++) {
+                tiles[i] = (byte) Cell.tile(game, i);
+            }
+        }
 
-                        // Update board.
-                        update(trigger, mouse_button);
+        if (painted) {
+            // No per-cell components: paintComponent draws the cells and clicks are mapped back to them.
+            this.cells = null;
+            this.setPreferredSize(new Dimension(board_width * cell_size, board_height * cell_size));
+            this.setOpaque(true);
+
+            this.addMouseListener(new MouseAdapter() {
+                public void mousePressed(MouseEvent e) {
+                    // Find out which cell has been clicked and by which mouse button.
+                    int index = cellAt(e.getX(), e.getY());
+                    if (index >= 0) {
+                        update(index, e.getButton());
                     }
+                }
+            });
+
+            // Ctrl + mouse wheel zooms around the pointer, anything else scrolls the enclosing scroll pane.
+            this.addMouseWheelListener(e -> {
+                if (e.isControlDown()) {
+                    zoom(-e.getWheelRotation(), e.getPoint());
+                } else {
+                    JScrollPane scroll_pane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, this);
+                    if (scroll_pane != null) {
+                        scroll_pane.dispatchEvent(SwingUtilities.convertMouseEvent(this, e, scroll_pane));
+                    }
+                }
+            });
+
+            // Ctrl + plus / minus zoom around the centre of the view.
+            this.getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("ctrl EQUALS"), "zoomIn");
+            this.getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("ctrl MINUS"), "zoomOut");
+            this.getActionMap().put("zoomIn", new AbstractAction() {
+                public void actionPerformed(ActionEvent e) {
+                    zoom(1, null);
+                }
+            });
+            this.getActionMap().put("zoomOut", new AbstractAction() {
+                public void actionPerformed(ActionEvent e) {
+                    zoom(-1, null);
+                }
+            });
+
+        } else {
+            this.cells = new Cell[board_height][board_width];
+
+            // Cells are placed by hand while the grid is being built (see addCells), then laid out as a grid.
+            this.setLayout(null);
+            this.setPreferredSize(new Dimension(board_width * Cell.CELL_WIDTH, board_height * Cell.CELL_HEIGHT));
 
-                    // Declare other functions to satisfy interface.
-                    public void mouseClicked(MouseEvent e) {}
-                    public void mouseReleased(MouseEvent e) {}
-                    public void mouseEntered(MouseEvent e) {}
-                    public void mouseExited(MouseEvent e) {}
-                });
+            // Single listener shared by every cell so we can click them.
+            MouseListener cell_listener = new MouseAdapter() {
+                public void mousePressed(MouseEvent e) {
+                    // Find out which cell has been clicked and by which mouse button.
+                    Cell trigger = (Cell) e.getSource();
+                    int mouse_button = e.getButton();
 
-                this.add(cells[i][j]);
+                    // Update board.
+                    update(trigger, mouse_button);
+                }
+            };
+
+            addCells(0, cell_listener);
+        }
+
+        // H shows a cell the solver is sure of, A lets it play one move and P shows or hides the heatmap.
+        this.getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("H"), "hint");
+        this.getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("A"), "autoPlay");
+        this.getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("P"), "heatmap");
+        this.getActionMap().put("hint", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                hint();
+            }
+        });
+        this.getActionMap().put("autoPlay", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                autoPlay();
+            }
+        });
+        this.getActionMap().put("heatmap", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                toggleHeatmap();
+            }
+        });
+
+        // F3 shows or hides the metrics.
+        this.getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("F3"), "metrics");
+        this.getActionMap().put("metrics", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                toggleMetrics();
+            }
+        });
+
+        // Ctrl + Z takes back a move and Ctrl + Y (or Ctrl + Shift + Z) makes it again.
+        this.getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("ctrl Z"), "undo");
+        this.getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("ctrl Y"), "redo");
+        this.getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("ctrl shift Z"), "redo");
+        this.getActionMap().put("undo", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                undo();
+            }
+        });
+        this.getActionMap().put("redo", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                redo();
+            }
+        });
+
+    }
+
+    // Create the Cell buttons from a row onwards, a batch of rows at a time. Small grids are done in one go; bigger
+    // ones carry on in later events, so the window can show and take clicks on the rows already there. Each cell shows
+    // the tiles as published when the cell is made, as moves may have been played by then, and later changes refresh
+    // it. Once every cell is in, the board is laid out as a grid, which also stretches the cells if the window is wider
+    // than the board.
+    private void addCells(int first_row, MouseListener listener) {
+        int last_row = Math.min(board_height, first_row + Math.max(1, CELL_BATCH / board_width));
+        for (int i = first_row; i < last_row; i++) {
+            for (int j = 0; j < board_width; j++) {
+
+                // Create new cell in array, viewing its index in the game. (row i, col j)
+                Cell cell = new Cell(i * board_width + j);
+                cell.addMouseListener(listener);
+                cell.setBounds(j * Cell.CELL_WIDTH, i * Cell.CELL_HEIGHT, Cell.CELL_WIDTH, Cell.CELL_HEIGHT);
+                cell.refresh(tiles[cell.getIndex()]);
+
+                this.cells[i][j] = cell;
+                this.add(cell);
             }
         }
 
-        // Once all cells are set up, go back and link all neighbours to each other.
-        for(int i = 0; i < board_height; i++) {
-            for(int j = 0; j < board_width; j++) {
-                for(int d_row = -1; d_row <= 1; d_row++) {
-                    for(int d_col = -1; d_col <= 1; d_col++) {
-                        // Check we're not adding this cell and that we're adding a valid index.
-                        if ((d_row != 0 || d_col != 0) && (i + d_row >= 0 && j + d_col >= 0 &&
-                                i + d_row < board_height && j + d_col < board_width)) {
-                            this.cells[i][j].addNeighbour(this.cells[i + d_row][j + d_col]);
-                        }
-                    }
+        if (last_row < board_height) {
+            SwingUtilities.invokeLater(() -> addCells(last_row, listener));
+        } else {
+            this.setLayout(new GridLayout(board_height, board_width));
+            revalidate();
+        }
+        repaint(0, first_row * Cell.CELL_HEIGHT, getWidth(), (last_row - first_row) * Cell.CELL_HEIGHT);
+    }
+
+    // Draw the cells that fall inside the area being repainted (painted mode only). Inside a scroll pane this is just
+    // the visible part of the board, so the cost of painting doesn't depend on the board size.
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+
+        if (cells == null) {
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+
+            int first_row = Math.max(0, clip.y / cell_size);
+            int last_row = Math.min(board_height - 1, (clip.y + clip.height - 1) / cell_size);
+            int first_col = Math.max(0, clip.x / cell_size);
+            int last_col = Math.min(board_width - 1, (clip.x + clip.width - 1) / cell_size);
+
+            TileCache cache = TileCache.forSize(cell_size);
+            for (int i = first_row; i <= last_row; i++) {
+                for (int j = first_col; j <= last_col; j++) {
+                    cache.draw(g, tiles[i * board_width + j], j * cell_size, i * cell_size);
                 }
             }
         }
+    }
+
+    // Draw the heatmap and outline the hinted cell over whatever is underneath: green if it's safe, red if it's a mine.
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
 
-        // Place mines so that the game can begin.
-        armMines(num_mines);
+        if (heatmap != null) {
+            paintHeatmap(g);
+        }
 
+        if (hint >= 0) {
+            Rectangle bounds = cellBounds(hint);
+            g.setColor(hint_mine ? Color.RED : Color.GREEN);
+            g.drawRect(bounds.x, bounds.y, bounds.width - 1, bounds.height - 1);
+            g.drawRect(bounds.x + 1, bounds.y + 1, bounds.width - 3, bounds.height - 3);
+        }
+
+        if (metrics_timer.isRunning()) {
+            paintMetrics(g);
+        }
+
+        if (Metrics.ENABLED) {
+            Metrics.PAINTS.incrementAndGet();
+        }
     }
 
-    // Board update method.
-    public void update(Cell trigger, int button) {
+    // Draw the metrics in the top left corner of the visible part of the board.
+    private void paintMetrics(Graphics g) {
+        List<String> lines = Metrics.lines();
+        Rectangle visible = getVisibleRect();
 
-        // Make sure game hasn't ended yet.
-        if (!game_over) {
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        FontMetrics metrics = g.getFontMetrics();
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
 
-            if (button == 1) { // Left click
+        g.setColor(new Color(0, 0, 0, 190));
+        g.fillRect(visible.x, visible.y, width + 8, lines.size() * metrics.getHeight() + 8);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.size(); i++) {
+            g.drawString(lines.get(i), visible.x + 4, visible.y + 4 + i * metrics.getHeight() + metrics.getAscent());
+        }
+    }
 
-                switch (trigger.getState()) {
+    // Show or hide the metrics overlay.
+    public void toggleMetrics() {
+        if (metrics_timer.isRunning()) {
+            metrics_timer.stop();
+        } else {
+            metrics_timer.start();
+        }
+        repaint(getVisibleRect());
+    }
 
-                    case DEFAULT -> { // If cell unrevealed...
+    // Tint the unrevealed cells inside the clip by their chance of being a mine.
+    private void paintHeatmap(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
 
-                        if (trigger.isMine() && num_revealed == 0) { // ... move mine if we hit it first go.
-                            trigger.setMine(false);
-                            armMines(1);
-                            update(trigger, button);
-                            return;
-                        } else if (trigger.isMine()) { // ... trip mine if not first go.
-                            trigger.setBackground(Cell.TRIPPED_MINE_COL);
-                            endGame();
-                            return;
-                        } else { // ... reveal if not a mine.
-                            trigger.reveal();
-                        }
+        // Painted boards only look at the cells inside the clip; a grid of buttons is small enough to check them all.
+        int first_row = 0, last_row = board_height - 1, first_col = 0, last_col = board_width - 1;
+        if (cells == null) {
+            first_row = Math.max(0, clip.y / cell_size);
+            last_row = Math.min(board_height - 1, (clip.y + clip.height - 1) / cell_size);
+            first_col = Math.max(0, clip.x / cell_size);
+            last_col = Math.min(board_width - 1, (clip.x + clip.width - 1) / cell_size);
+        }
 
-                    }
-                    case REVEALED -> { // If cell is revealed...
-                        // Check if we can chord the cell
-                        ChordResult result = trigger.getChordStatus();
-                        if (result == ChordResult.CHORDABLE) {
-                            trigger.chord();
-                        } else if (result == ChordResult.NEIGHBOUR_IS_MINE) {
-                            trigger.setBackground(Cell.PROXY_TRIPPED_MINE_COL);
-                            endGame();
-                        }
-                    }
+        for (int i = first_row; i <= last_row; i++) {
+            for (int j = first_col; j <= last_col; j++) {
+                int index = i * board_width + j;
+                float value = heatmap.get(index);
+                if (Float.isNaN(value) || tiles[index] / Cell.CONTENTS == Cell.BG_REVEALED) {
+                    continue;
+                }
 
+                Rectangle bounds = cellBounds(index);
+                if (clip.intersects(bounds)) {
+                    g.setColor(HEAT_COLORS[Math.round(value * 100)]);
+                    g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
                 }
+            }
+        }
+    }
 
-            } else if (button == 3) { // Right click
-                trigger.nextFlagState();
+    // Show or hide the mine probability heatmap.
+    public void toggleHeatmap() {
+        engine.submit(game -> {
+            heatmap_on = !heatmap_on;
+            if (heatmap_on) {
+                probabilities = new Probabilities(game);
+            } else {
+                probabilities = null;
             }
+            publishHeatmap();
+        });
+    }
+
+    // Work out the probabilities for the game as it is (on the engine thread) and hand a copy to the board to draw.
+    private void publishHeatmap() {
+        Heatmap result = null;
+        if (heatmap_on && !game.isGameOver()) {
+            probabilities.compute(solver(), HEATMAP_BUDGET);
+            result = probabilities.getHeatmap();
+        }
 
-            updateParent();
+        Heatmap published = result;
+        engine.publish(() -> {
+            heatmap = published;
+            repaint();
+        });
+    }
 
-            // Check win.
-            if (num_revealed == (board_height * board_width) - num_mines) {
-                gameWin();
-            }
+    // Work out the tiles of the cells an action changed (on the engine thread) and hand them to the board, ahead of
+    // the change set that repaints them. Only a reset of a huge game doesn't list its cells (see ChangeSet.isSummary),
+    // and that goes as the tiles of its area, which replace the board's tiles outright if that area is the whole board.
+    private void publishTiles(ChangeSet changes) {
+        int size = changes.size();
+        if (size == 0) {
+            return;
+        }
+
+        if (!changes.isSummary()) {
+            // The mines of a huge lost game are spread all over it, so the tiles of big change sets are worked out on
+            // the common fork-join pool, as their area is.
+            int[] indices = new int[size];
+            byte[] values = new byte[size];
+            IntStream range = IntStream.range(0, size);
+            (size > ChangeSet.LARGE ? range.parallel() : range).forEach(i -> {
+                indices[i] = changes.get(i);
+                values[i] = (byte) Cell.tile(game, indices[i]);
+            });
+            engine.publish(() -> {
+                for (int i = 0; i < indices.length; i++) {
+                    tiles[indices[i]] = values[i];
+                }
+            });
+            return;
+        }
 
+        int min_row = changes.getMinRow(), max_row = changes.getMaxRow();
+        int min_col = changes.getMinCol(), columns = changes.getMaxCol() - min_col + 1;
+        byte[] area = new byte[(max_row - min_row + 1) * columns];
+        for (int i = min_row, k = 0; i <= max_row; i++) {
+            for (int j = min_col; j < min_col + columns; j++) {
+                area[k++] = (byte) Cell.tile(game, i * board_width + j);
+            }
         }
 
+        if (area.length == board_height * board_width) {
+            engine.publish(() -> tiles = area);
+        } else {
+            engine.publish(() -> {
+                for (int i = min_row; i <= max_row; i++) {
+                    System.arraycopy(area, (i - min_row) * columns, tiles, i * board_width + min_col, columns);
+                }
+            });
+        }
     }
 
-    public void gameWin() {
-        game_over = true;
+    // Area of the board taken up by a cell.
+    private Rectangle cellBounds(int index) {
+        int row = index / board_width, col = index % board_width;
+        if (cells != null && cells[row][col] != null) {
+            return cells[row][col].getBounds();
+        }
 
-        JOptionPane.showMessageDialog(this, "Congratulations, You Win! :)",
-                "Winner!", JOptionPane.PLAIN_MESSAGE);
+        return new Rectangle(col * cell_size, row * cell_size, cell_size, cell_size);
+    }
 
+    // The solver, made on the engine thread the first time a hint, move or heatmap asks for it rather than with the
+    // board: it keeps about 17 bytes per cell and starts by looking over every cell, which a game that never asks
+    // shouldn't pay for. From then on it follows every change.
+    private Solver solver() {
+        if (solver == null) {
+            solver = new Solver(game);
+        }
+        return solver;
     }
 
-    // Method to update labels on parent
-    public void updateParent() {
-        // Update labels on parent window
+    // Ask the solver for a safe cell (or failing that a mine) and outline it. The solver is only read on the engine
+    // thread, so the answer comes back as a separate step.
+    public void hint() {
+        engine.submit(game -> {
+            int safe = solver().nextSafe();
+            int index = safe >= 0 ? safe : solver.nextMine();
+            engine.publish(() -> {
+                if (index < 0) {
+                    Toolkit.getDefaultToolkit().beep();
+                }
+                showHint(index, safe < 0);
+            });
+        });
+    }
 
-        // Get the Minesweeper window: Board < JPanel < JLayeredPane < JRootPane < Minesweeper
-        Minesweeper parent = ((Minesweeper) this.getParent().getParent().getParent().getParent());
-        JLabel lbl_remaining_flags = parent.lbl_remaining_flags;
-        JLabel lbl_score = parent.lbl_score;
+    private void showHint(int index, boolean mine) {
+        if (hint >= 0) {
+            repaint(cellBounds(hint));
+        }
 
-        // Update labels
-        lbl_remaining_flags.setText( Integer.toString(flags_remaining) );
-        lbl_score.setText( Integer.toString(num_revealed) );
+        hint = index;
+        hint_mine = mine;
+
+        if (hint >= 0) {
+            repaint(cellBounds(hint));
+            scrollRectToVisible(cellBounds(hint));
+        }
     }
 
-    // Method to place mines. Take in mines to place as argument so that we can move just 1 mine if we need to.
-    public void armMines(int mines_to_place) {
-        Random rnd = new Random();
+    // Find the cell under a point on the painted board (-1 if none).
+    private int cellAt(int x, int y) {
+        int row = y / cell_size, col = x / cell_size;
+        if (x < 0 || y < 0 || row >= board_height || col >= board_width) {
+            return -1;
+        }
 
-        while(mines_to_place > 0) {
-            // Generate random board position.
-            int i = rnd.nextInt(board_height);
-            int j = rnd.nextInt(board_width);
+        return row * board_width + col;
+    }
 
-            // Make sure that the random position is not already a mine, and that the cell isn't revealed in case we
-            // are moving a mine.
-            if (!this.cells[i][j].isMine() && this.cells[i][j].getState() != State.REVEALED) {
-                this.cells[i][j].setMine(true);
-                mines_to_place--;
-            }
+    // Change the zoom level of the painted board by steps, keeping the board point under anchor (or the centre of the
+    // view if null) in the same place on screen.
+    public void zoom(int steps, Point anchor) {
+        int new_zoom = Math.max(0, Math.min(ZOOM_LEVELS.length - 1, zoom + steps));
+        if (cells != null || new_zoom == zoom) {
+            return;
+        }
+
+        Rectangle view = getVisibleRect();
+        if (anchor == null) {
+            anchor = new Point(view.x + view.width / 2, view.y + view.height / 2);
         }
 
+        int old_size = cell_size;
+        zoom = new_zoom;
+        cell_size = ZOOM_LEVELS[zoom];
+
+        // Tiles for the new size are drawn the first time it is painted (see TileCache).
+        this.setPreferredSize(new Dimension(board_width * cell_size, board_height * cell_size));
+
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        if (viewport != null) {
+            // Work in longs, as the far corner of a zoomed-in giant board can be past the range of an int.
+            int x = (int) Math.max(0, (long) anchor.x * cell_size / old_size - (anchor.x - view.x));
+            int y = (int) Math.max(0, (long) anchor.y * cell_size / old_size - (anchor.y - view.y));
+            viewport.setViewSize(getPreferredSize());
+            viewport.setViewPosition(new Point(x, y));
+        }
+
+        revalidate();
+        repaint();
     }
 
-    // Method to reset the board
-    public void reset() {
-        // Loop over each cell and reset.
-        for (Cell[] row : cells) {
-            for (Cell cell: row) {
-                cell.setMine(false);
-                cell.setState(State.DEFAULT);
+    // Scrollable, so scroll pane steps match the cells.
+
+    public Dimension getPreferredScrollableViewportSize() {
+        Dimension size = getPreferredSize();
+        if (GraphicsEnvironment.isHeadless()) {
+            return size;
+        }
+
+        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+
+        return new Dimension(Math.min(size.width, screen.width * 3 / 4), Math.min(size.height, screen.height * 3 / 4));
+    }
+
+    public int getScrollableUnitIncrement(Rectangle visible, int orientation, int direction) {
+        return cell_size;
+    }
+
+    public int getScrollableBlockIncrement(Rectangle visible, int orientation, int direction) {
+        int block = orientation == SwingConstants.HORIZONTAL ? visible.width : visible.height;
+        return Math.max(cell_size, block - cell_size);
+    }
+
+    public boolean getScrollableTracksViewportWidth() {
+        return false;
+    }
+
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+
+    // Board update method. The click is queued for the engine thread, which publishes the result back to apply().
+    public void update(Cell trigger, int button) {
+        update(trigger.getIndex(), button);
+    }
+
+    public void update(int index, int button) {
+        long time = System.currentTimeMillis();
+        long queued = Metrics.ENABLED ? System.nanoTime() : 0;
+        engine.submit(game -> {
+            play(game, index, button, time);
+            if (Metrics.ENABLED) {
+                Metrics.CLICK.record(System.nanoTime() - queued);
             }
+        });
+    }
+
+    // Make a move on the engine thread, recording it in the journal if it changed anything.
+    private void play(Game game, int index, int button, long time) {
+        game.update(index, button);
+        if (game.hasChanged()) {
+            journal.record(game, index, button, time);
         }
+    }
 
-        // Place mines in new places.
-        armMines(num_mines);
+    // Let the solver play one move: reveal a cell it knows is safe, or failing that flag one it knows is a mine.
+    public void autoPlay() {
+        long time = System.currentTimeMillis();
+        engine.submit(game -> {
+            int safe = solver().nextSafe();
+            int index = safe >= 0 ? safe : solver.nextMine();
+            if (index >= 0) {
+                play(game, index, safe >= 0 ? Game.LEFT_CLICK : Game.RIGHT_CLICK, time);
+            }
+        });
+    }
 
-        // Reset attributes.
-        game_over = false;
-        num_revealed = 0;
-        flags_remaining = num_mines;
+    // Take back the last move, or beep if there is nothing to take back.
+    public void undo() {
+        engine.submit(game -> {
+            if (!journal.undo(game)) {
+                engine.publish(Toolkit.getDefaultToolkit()::beep);
+            }
+        });
+    }
 
-        // Finally update parent window.
-        updateParent();
+    // Make the last move taken back again, or beep if there is none.
+    public void redo() {
+        engine.submit(game -> {
+            if (!journal.redo(game)) {
+                engine.publish(Toolkit.getDefaultToolkit()::beep);
+            }
+        });
     }
 
-    // Method to execute everything needed to end the game.
-    public void endGame() {
-        // Set game over so board is no longer intractable.
-        game_over = true;
+    // Apply everything one action changed (on the event dispatch thread) as a single batch: one repaint of the area
+    // covering the changed cells (or one refresh per Cell button, which Swing coalesces) and one label update.
+    private void apply(ChangeSet changes) {
+        int size = changes.size();
 
-        // Reveal all unflagged mine locations and highlight mistakes.
-        for (int i = 0; i < board_height; i++) {
-            for (int j = 0; j < board_width; j++) {
-                if (cells[i][j].getState() != State.FLAGGED && cells[i][j].isMine()) {
-                    // Show mine
-                    if (cells[i][j].getBackground() != Color.RED) { // Don't affect triggered cell.
-                        cells[i][j].setIcon(Cell.ICON_MINE);
-                    } else {
-                        cells[i][j].setIcon(Cell.ICON_BOOM);
+        // Any hint is out of date once the game moves on.
+        if (hint >= 0) {
+            showHint(-1, false);
+        }
+
+        if (cells == null && size > 0) {
+            // The engine thread has already worked out the area (see ChangeSet.copy), so even the millions of mines
+            // shown when a huge board is lost cost nothing here.
+            int min_row = changes.getMinRow(), max_row = changes.getMaxRow();
+            int min_col = changes.getMinCol(), max_col = changes.getMaxCol();
+
+            repaint(min_col * cell_size, min_row * cell_size,
+                    (max_col - min_col + 1) * cell_size, (max_row - min_row + 1) * cell_size);
+            if (Metrics.ENABLED) {
+                Metrics.REPAINTS.incrementAndGet();
+            }
+        } else if (cells != null && changes.isSummary()) {
+            for (Cell[] row : cells) {
+                for (Cell cell : row) {
+                    if (cell != null) {
+                        cell.refresh(tiles[cell.getIndex()]);
                     }
-                } else if (cells[i][j].getState() == State.FLAGGED && !cells[i][j].isMine()) {
-                    cells[i][j].setIcon(Cell.ICON_NOPE);
                 }
             }
+            if (Metrics.ENABLED) {
+                Metrics.REPAINTS.addAndGet(board_height * board_width);
+            }
+        } else if (cells != null) {
+            for (int i = 0; i < size; i++) {
+                int index = changes.get(i);
+                // Cells not built yet pick up the tiles as they are when they are.
+                Cell cell = cells[index / board_width][index % board_width];
+                if (cell != null) {
+                    cell.refresh(tiles[index]);
+                }
+            }
+            if (Metrics.ENABLED) {
+                Metrics.REPAINTS.addAndGet(size);
+            }
         }
+
+        updateParent(changes.getFlagsRemaining(), changes.getNumRevealed());
+
+        // Ending a game is timed from the start of the action that ended it until here, taking in showing every mine
+        // and wrong flag on a loss: listing them, working out their area, and refreshing or repainting them.
+        if (Metrics.ENABLED && changes.hasEnded()) {
+            Metrics.END_GAME.record(System.nanoTime() - changes.getStarted());
+        }
+
+        if (changes.hasEnded() && changes.isWon()) { // Check win.
+            gameWin();
+        }
+    }
+
+    public void gameWin() {
+        JOptionPane.showMessageDialog(this, "Congratulations, You Win! :)",
+                "Winner!", JOptionPane.PLAIN_MESSAGE);
+
+    }
+
+    // Method to update labels on parent, only when the counters have actually changed.
+    private void updateParent(int new_flags_remaining, int new_num_revealed) {
+        if (new_flags_remaining == flags_remaining && new_num_revealed == num_revealed) {
+            return;
+        }
+
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        flags_remaining = new_flags_remaining;
+        num_revealed = new_num_revealed;
+
+        if (status_listener != null) {
+            status_listener.statusChanged(flags_remaining, num_revealed);
+        }
+
+        if (Metrics.ENABLED) {
+            Metrics.UPDATE_PARENT.record(System.nanoTime() - start);
+        }
+    }
+
+    // Method to reset the board. The game places mines in new places, then only the cells that changed are redrawn.
+    // Without guessing, the board comes from the pool and its start cell is opened as a second step, so that both the
+    // reset and the opening are published. If no such board can be made it falls back to an ordinary one.
+    public void reset() {
+        long time = System.currentTimeMillis();
+        if (no_guess_pool == null) {
+            engine.submit(game -> {
+                game.reset();
+                journal.start(game.getSeed(), time);
+            });
+            return;
+        }
+
+        engine.submit(game -> {
+            try {
+                NoGuessBoard board = no_guess_pool.take();
+                game.reset(board.getSeed());
+                no_guess_start = board.getStart();
+            } catch (IllegalStateException e) {
+                game.reset();
+                no_guess_start = -1;
+            }
+            journal.start(game.getSeed(), time);
+        });
+        engine.submit(game -> {
+            if (no_guess_start >= 0) {
+                play(game, no_guess_start, Game.LEFT_CLICK, time);
+            }
+        });
+    }
+
+    // Finish writing the journal once every move already queued has been recorded.
+    public CompletableFuture<Void> closeJournal() {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        engine.submit(game -> {
+            try {
+                if (journal_file != null) {
+                    journal_file.close();
+                }
+                closed.complete(null);
+            } catch (IOException e) {
+                closed.completeExceptionally(e);
+            }
+        });
+        return closed;
+    }
+
+    // Save the game to a file on the engine thread, or delete the file instead if the game is over so there is nothing
+    // to resume. The future completes once that is done.
+    public CompletableFuture<Void> save(Path path) {
+        CompletableFuture<Void> saved = new CompletableFuture<>();
+        engine.submit(game -> {
+            try {
+                if (game.isGameOver()) {
+                    Files.deleteIfExists(path);
+                } else {
+                    GameFile.save(game, path);
+                }
+                saved.complete(null);
+            } catch (IOException e) {
+                saved.completeExceptionally(e);
+            }
+        });
+        return saved;
+    }
+
+    // Getters and setters
+
+    public void setStatusListener(StatusListener status_listener) {
+        this.status_listener = status_listener;
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    public int getNumRevealed() {
+        return num_revealed;
+    }
+
+    public int getFlagsRemaining() {
+        return flags_remaining;
+    }
+
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    public boolean isNoGuess() {
+        return no_guess_pool != null;
+    }
+
+    public boolean isPainted() {
+        return cells == null;
     }
 }
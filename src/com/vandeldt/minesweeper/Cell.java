@@ -1,10 +1,15 @@
 package com.vandeldt.minesweeper;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
+import javax.swing.border.Border;
 import javax.swing.border.LineBorder;
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 public class Cell extends JButton {
 
@@ -28,29 +33,49 @@ public class Cell extends JButton {
             Color.BLACK, // 7
             Color.GRAY, // 8
     };
+    static final String[] ADJ_TEXT = {"", "1", "2", "3", "4", "5", "6", "7", "8"};
+
+    // Every cell has the same border.
+    private static final Border BORDER = new LineBorder(DEF_BD_COL);
+
+    // Every way a cell can look, as a tile number: background * CONTENTS + content, where the content is the number of
+    // adjacent mines (0 for none) or one of the icons after them.
+    static final int BG_DEFAULT = 0, BG_REVEALED = 1, BG_TRIPPED = 2, BG_PROXY_TRIPPED = 3;
+    static final int FLAG = 9, QUESTION = 10, MINE = 11, BOOM = 12, NOPE = 13;
+    static final int CONTENTS = 14;
+    public static final int TILES = 4 * CONTENTS;
+
+    private static final Color[] BACKGROUNDS = {DEF_BG_COL, REVEALED_CELL_COL, TRIPPED_MINE_COL,
+            PROXY_TRIPPED_MINE_COL};
+
+    // Icons (Mostly by Sirea, http://www.rw-designer.com/user/5920), in the order of their contents, kept at full size
+    // for drawing tiles of any size and scaled once to fit a Cell button. Reading and scaling them is a good part of
+    // starting up, so they are only loaded when this class is first used, which setWindowIcon does in the background.
+    private static final class Images {
+        static final BufferedImage[] IMAGES = {
+                loadImage("images/flag.png"), // Flag
+                loadImage("images/question.png"), // Possible flag
+                loadImage("images/mine.png"), // Mine Icon
+                loadImage("images/explosion.png"), // Triggered Mine Icon
+                loadImage("images/no-bomb.png"), // Wrong Flag Icon
+        };
+        static final ImageIcon[] ICONS = Arrays.stream(IMAGES).map(Cell::scaledIcon).toArray(ImageIcon[]::new);
+    }
 
-    // Icons (Mostly by Sirea, http://www.rw-designer.com/user/5920)
-
-    static final ImageIcon ICON_FLAG = scaledIcon("images/flag.png"); // Flag
-    static final ImageIcon ICON_QUESTION = scaledIcon("images/question.png"); // Possible flag
-    static final ImageIcon ICON_MINE = scaledIcon("images/mine.png"); // Mine Icon
-    static final ImageIcon ICON_BOOM = scaledIcon("images/explosion.png"); // Triggered Mine Icon
-    static final ImageIcon ICON_NOPE = scaledIcon("images/no-bomb.png"); // Wrong Flag Icon
-
-    // Initialise cell attributes
-    private List<Cell> neighbours = new ArrayList<>();
-    private State state = State.DEFAULT;
-    private boolean is_mine = false;
+    // Initialise cell attributes. Game rules live in Game, the cell only shows the state of its index.
+    private final int index;
 
     // Constructor
-    public Cell() {
+    public Cell(int index) {
 
         super();
 
+        this.index = index;
+
         // Set up default appearance
         this.setBackground( DEF_BG_COL );
         this.setForeground( DEF_FG_COL );
-        this.setBorder(new LineBorder(DEF_BD_COL));
+        this.setBorder(BORDER);
         this.setPreferredSize(new Dimension(CELL_WIDTH, CELL_HEIGHT));
         this.setHorizontalAlignment(CENTER);
         this.setVerticalAlignment(CENTER);
@@ -59,160 +84,113 @@ public class Cell extends JButton {
 
     }
 
-    // Cell right click behaviour (Flagging)
-    public void nextFlagState() {
-        switch (this.state) {
-            case DEFAULT -> {
-                this.state = State.FLAGGED;
-
-                // Change cell to show flagged
-                this.setIcon(ICON_FLAG);
-
-                // Remove flag from remaining pool
-                Board.flags_remaining--;
-            }
-            case FLAGGED -> {
-                this.state = State.POSSIBLE;
-
-                // Change cell to show possible
-                this.setIcon(ICON_QUESTION);
-
-                // Add flag back to remaining pool.
-                Board.flags_remaining++;
-            }
-            case POSSIBLE -> {
-                this.state = State.DEFAULT;
+    // Method to update appearance to a tile (see tile), as the board last had it from the game
+    public void refresh(int tile) {
+        int content = tile % CONTENTS;
+        int adjacent_mines = content < FLAG ? content : 0;
 
-                // Remove flag indicators.
-                this.setIcon(null);
-            }
-        }
+        this.setBackground(BACKGROUNDS[tile / CONTENTS]);
+        this.setForeground(ADJ_TEXT_COL[adjacent_mines]);
+        this.setText(ADJ_TEXT[adjacent_mines]);
+        this.setIcon(content >= FLAG ? Images.ICONS[content - FLAG] : null);
     }
 
-    // Method to check whether we can chord this cell
-    public ChordResult getChordStatus() {
-        int flagged_neighbours = 0;
-        boolean mine_found = false;
-        Cell mine_location = new Cell();
-
-        // Loop over each neighbour to count flags and see if there are any unflagged mines.
-        for (Cell neighbour: neighbours) {
-            if (neighbour.getState() == State.FLAGGED) {
-                flagged_neighbours++;
-            } else if (neighbour.is_mine) {
-                mine_found = true;
-                mine_location = neighbour;
-            }
-        }
-
-        // If there are enough flagged neighbours...
-        if (flagged_neighbours == this.getAdjacentMines()) {
-            // ... check we didn't find any unflagged mines.
-            if (mine_found) {
-                mine_location.setBackground(TRIPPED_MINE_COL);
-                return ChordResult.NEIGHBOUR_IS_MINE;
-            } else {
-                // If no mines we can chord.
-                return ChordResult.CHORDABLE;
-            }
+    // Tile showing a cell: highlight whatever ended the game, otherwise show whether it's revealed, and its number or
+    // icon. Once the game is lost, show all unflagged mines and highlight wrong flags.
+    public static int tile(Game game, int index) {
+        State state = game.getState(index);
+
+        int background;
+        if (index == game.getTripped()) {
+            background = BG_TRIPPED;
+        } else if (index == game.getProxyTripped()) {
+            background = BG_PROXY_TRIPPED;
+        } else if (state == State.REVEALED) {
+            background = BG_REVEALED;
         } else {
-            return ChordResult.NOT_ENOUGH_FLAGS;
+            background = BG_DEFAULT;
         }
 
+        return background * CONTENTS + content(state, game.isGameOver() && !game.isWon(), game.isMine(index),
+                index == game.getTripped(), state == State.REVEALED ? game.getAdjacentMines(index) : 0);
     }
 
-    // Method to get the number of mines adjacent to this cell
-    private int getAdjacentMines() {
-        int adjacent = 0;
-
-        // Loop over each neighbour to count mines
-        for (Cell neighbour: neighbours) {
-            if (neighbour.is_mine) {
-                adjacent++;
+    // Content of a tile from what is known about the cell, for boards other than Game's too.
+    static int content(State state, boolean lost, boolean mine, boolean tripped, int adjacent_mines) {
+        if (lost) {
+            if (state != State.FLAGGED && mine) {
+                return tripped ? BOOM : MINE;
+            } else if (state == State.FLAGGED && !mine) {
+                return NOPE;
             }
         }
 
-        return adjacent;
+        return switch (state) {
+            case FLAGGED -> FLAG;
+            case POSSIBLE -> QUESTION;
+            case REVEALED -> adjacent_mines;
+            default -> 0;
+        };
     }
 
-    // Method to reveal cell
-    public void reveal() {
-        // Check that cell isn't already revealed or flagged first (makes chord function easier)
-        if (this.state == State.DEFAULT) {
-
-            // If for some reason we try to reveal a mine, throw an error.
-            if (this.is_mine) {
-                throw new Error("Cannot reveal a mined cell!");
-            }
-
-            this.state = State.REVEALED;
-
-            // Change appearance to show revealed.
-            this.setBackground(REVEALED_CELL_COL);
-
-            Board.num_revealed++;
-
-            // Count adjacent mines and update cell appearance
-            int adjacent_mines = this.getAdjacentMines();
-            if (adjacent_mines > 0) {
-
-                this.setText(Integer.toString(adjacent_mines));
-                this.setForeground(ADJ_TEXT_COL[adjacent_mines]);
-
-            } else {
-
-                // Reveal adjacent cells if no mines adjacent
-                this.chord();
-
-            }
+    // Draw a tile of the given size straight onto g: background, border, then the number (in the graphics font, which
+    // should match the size) or the icon scaled to fit. This is how TileCache renders its tiles; boards blit those.
+    public static void drawTile(Graphics g, int tile, int x, int y, int size) {
+        int content = tile % CONTENTS;
+
+        // Background and border
+        g.setColor(BACKGROUNDS[tile / CONTENTS]);
+        g.fillRect(x, y, size, size);
+        g.setColor(DEF_BD_COL);
+        g.drawRect(x, y, size - 1, size - 1);
+
+        // Number of adjacent mines, centred.
+        if (content > 0 && content < FLAG) {
+            FontMetrics metrics = g.getFontMetrics();
+            String text = ADJ_TEXT[content];
+            g.setColor(ADJ_TEXT_COL[content]);
+            g.drawString(text, x + (size - metrics.stringWidth(text)) / 2,
+                    y + (size - metrics.getHeight()) / 2 + metrics.getAscent());
         }
 
-    }
-
-    // Reveal cells adjacent to this one
-    public void chord() {
-        // Loop over neighbours and reveal.
-        for (Cell neighbour: neighbours) {
-            neighbour.reveal();
+        // Icon, scaled from the full size image to fit inside the border.
+        if (content >= FLAG) {
+            if (g instanceof Graphics2D graphics) {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            }
+            g.drawImage(Images.IMAGES[content - FLAG], x + 1, y + 1, size - 2, size - 2, null);
         }
     }
 
     // Getters and setters
 
-
-    // Add neighbour to neighbours list:
-    public void addNeighbour(Cell new_neighbour) {
-        this.neighbours.add( new_neighbour );
+    public int getIndex() {
+        return index;
     }
 
-    public State getState() {
-        return state;
+    // Give a window the mine as its icon once the images have loaded, without waiting for them.
+    static void setWindowIcon(Window window) {
+        CompletableFuture.supplyAsync(() -> Images.IMAGES[MINE - FLAG])
+                .thenAccept(image -> EventQueue.invokeLater(() -> window.setIconImage(image)));
     }
 
-    public void setState(State state) {
-        this.state = state;
-
-        // If setting back to default, change appearance back.
-        if (this.state == State.DEFAULT) {
-            this.setBackground(DEF_BG_COL);
-            this.setForeground(DEF_FG_COL);
-            this.setText("");
-            this.setIcon(null);
+    private static BufferedImage loadImage(String path) {
+        try {
+            return ImageIO.read(Cell.class.getResource( path ));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
-    public boolean isMine() {
-        return is_mine;
-    }
-
-    public void setMine(boolean mine) {
-        is_mine = mine;
-    }
-
-    private static ImageIcon scaledIcon(String path) {
-        ImageIcon unscaled = new ImageIcon(Cell.class.getResource( path ));
-        Image scaledImage = unscaled.getImage().getScaledInstance(CELL_WIDTH - 2, CELL_HEIGHT - 2, 0);
+    // Scale an image down to fit a Cell button once, up front, rather than with getScaledInstance, which rescales
+    // lazily and slowly.
+    private static ImageIcon scaledIcon(BufferedImage image) {
+        BufferedImage scaled = new BufferedImage(CELL_WIDTH - 2, CELL_HEIGHT - 2, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.drawImage(image, 0, 0, CELL_WIDTH - 2, CELL_HEIGHT - 2, null);
+        g.dispose();
 
-        return new ImageIcon(scaledImage);
+        return new ImageIcon(scaled);
     }
 }
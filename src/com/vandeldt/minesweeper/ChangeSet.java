@@ -0,0 +1,295 @@
+package com.vandeldt.minesweeper;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Everything that changed in one action on a Game: the cells that need redrawing and the counters afterwards. The
+// cells are views onto the game's own lists rather than copies, so a change set is only valid until the next action.
+public class ChangeSet {
+
+    // A change set is made of at most this many runs of cell indices.
+    private static final int MAX_SEGMENTS = 4;
+
+    // Runs longer than this are split up to work out their area in parallel, and change sets bigger than this are
+    // copied as just their area (e.g. every mine on a lost game, which is redrawn as a single repaint anyway).
+    static final int LARGE = 1 << 16;
+
+    private final int width;
+    private final int[][] segments = new int[MAX_SEGMENTS][];
+    private final int[] lengths = new int[MAX_SEGMENTS];
+    private int num_segments = 0;
+    private int size = 0;
+    private final int[] single = new int[1];
+
+    // Counters after the action.
+    private int opened, num_revealed, flags_remaining;
+    private boolean game_over, won, ended, reset;
+
+    // When the action began (System.nanoTime), if metrics are on.
+    private long started;
+
+    // Rows and columns covering every changed cell once worked out, and whether a copy left the cells themselves out.
+    private boolean area_known = false, summary = false;
+    private int min_row, max_row, min_col, max_col;
+
+    // Constructor, for a board of the given width.
+    ChangeSet(int width) {
+        this.width = width;
+    }
+
+    // Start a new action.
+    void clear(long started) {
+        this.started = started;
+        num_segments = 0;
+        size = 0;
+        opened = 0;
+        reset = false;
+        area_known = false;
+        summary = false;
+    }
+
+    // Mark this as the change set of a reset, where everything from the last game has gone.
+    void markReset() {
+        reset = true;
+    }
+
+    // Add the first length cells of an array.
+    void add(int[] cells, int length) {
+        if (length > 0) {
+            segments[num_segments] = cells;
+            lengths[num_segments++] = length;
+            size += length;
+            area_known = false;
+        }
+    }
+
+    // Add every cell of a board of the given size, as an area alone (see isSummary), for when there are too many
+    // changed cells to have listed.
+    void addAll(int cells) {
+        size += cells;
+        summary = true;
+        area_known = true;
+        min_row = 0;
+        max_row = cells / width - 1;
+        min_col = 0;
+        max_col = width - 1;
+    }
+
+    // Add a single cell.
+    void add(int index) {
+        single[0] = index;
+        add(single, 1);
+    }
+
+    // Record the counters once the action is done.
+    void finish(int opened, int num_revealed, int flags_remaining, boolean game_over, boolean won, boolean ended) {
+        this.opened = opened;
+        this.num_revealed = num_revealed;
+        this.flags_remaining = flags_remaining;
+        this.game_over = game_over;
+        this.won = won;
+        this.ended = ended;
+    }
+
+    // Number of changed cells (a cell may appear more than once).
+    public int size() {
+        return size;
+    }
+
+    // Index of the i-th changed cell.
+    public int get(int i) {
+        if (summary) {
+            throw new IllegalStateException("Only the area of this change set was kept");
+        }
+
+        for (int segment = 0; segment < num_segments; segment++) {
+            if (i < lengths[segment]) {
+                return segments[segment][i];
+            }
+            i -= lengths[segment];
+        }
+
+        throw new IndexOutOfBoundsException(i);
+    }
+
+    // Copy into a standalone change set that stays valid after the game moves on, e.g. to hand to another thread. The
+    // area is worked out first, and a change set of more than LARGE cells is copied as its area alone (see isSummary):
+    // copying millions of cells only for the other thread to go over them again would come to the same repaint.
+    public ChangeSet copy() {
+        area();
+
+        ChangeSet copy = new ChangeSet(width);
+        if (size > LARGE || summary) {
+            copy.size = size;
+            copy.summary = true;
+        } else {
+            int[] cells = new int[size];
+            for (int segment = 0, i = 0; segment < num_segments; i += lengths[segment++]) {
+                System.arraycopy(segments[segment], 0, cells, i, lengths[segment]);
+            }
+            copy.add(cells, size);
+        }
+
+        copy.finish(opened, num_revealed, flags_remaining, game_over, won, ended);
+        copy.reset = reset;
+        copy.started = started;
+        copy.area_known = true;
+        copy.min_row = min_row;
+        copy.max_row = max_row;
+        copy.min_col = min_col;
+        copy.max_col = max_col;
+        return copy;
+    }
+
+    // Work out the rows and columns covering every changed cell, if not already done. Long runs are scanned in
+    // parallel on the common fork-join pool.
+    private void area() {
+        if (area_known || summary) {
+            return;
+        }
+
+        int[] area = emptyArea();
+        for (int segment = 0; segment < num_segments; segment++) {
+            if (lengths[segment] > LARGE) {
+                merge(area, ForkJoinPool.commonPool().invoke(
+                        new AreaTask(segments[segment], 0, lengths[segment], width)));
+            } else {
+                scan(segments[segment], 0, lengths[segment], width, area);
+            }
+        }
+
+        min_row = size == 0 ? 0 : area[0] / width;
+        max_row = size == 0 ? -1 : area[1] / width;
+        min_col = area[2];
+        max_col = area[3];
+        area_known = true;
+    }
+
+    // An area as the smallest and largest index, then the smallest and largest column.
+    private static int[] emptyArea() {
+        return new int[]{Integer.MAX_VALUE, -1, Integer.MAX_VALUE, -1};
+    }
+
+    private static void merge(int[] area, int[] other) {
+        area[0] = Math.min(area[0], other[0]);
+        area[1] = Math.max(area[1], other[1]);
+        area[2] = Math.min(area[2], other[2]);
+        area[3] = Math.max(area[3], other[3]);
+    }
+
+    // Take cells[from, to) into an area. Columns need a division per cell, but only until they span the whole width,
+    // which the mines of a lost game do almost at once; after that only the smallest and largest index matter.
+    private static void scan(int[] cells, int from, int to, int width, int[] area) {
+        int min_index = area[0], max_index = area[1], min_col = area[2], max_col = area[3];
+
+        int i = from;
+        for (; i < to && (min_col > 0 || max_col < width - 1); i++) {
+            int index = cells[i], col = index % width;
+            min_index = Math.min(min_index, index);
+            max_index = Math.max(max_index, index);
+            min_col = Math.min(min_col, col);
+            max_col = Math.max(max_col, col);
+        }
+        for (; i < to; i++) {
+            min_index = Math.min(min_index, cells[i]);
+            max_index = Math.max(max_index, cells[i]);
+        }
+
+        area[0] = min_index;
+        area[1] = max_index;
+        area[2] = min_col;
+        area[3] = max_col;
+    }
+
+    // Area of a long run, split in half until the pieces are no longer than LARGE.
+    private static final class AreaTask extends RecursiveTask<int[]> {
+        private final int[] cells;
+        private final int from, to, width;
+
+        AreaTask(int[] cells, int from, int to, int width) {
+            this.cells = cells;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+        }
+
+        @Override
+        protected int[] compute() {
+            int[] area = emptyArea();
+            if (to - from <= LARGE) {
+                scan(cells, from, to, width, area);
+                return area;
+            }
+
+            int middle = (from + to) >>> 1;
+            AreaTask left = new AreaTask(cells, from, middle, width);
+            left.fork();
+            merge(area, new AreaTask(cells, middle, to, width).compute());
+            merge(area, left.join());
+            return area;
+        }
+    }
+
+    // Getters
+
+    public int getOpened() {
+        return opened;
+    }
+
+    public int getNumRevealed() {
+        return num_revealed;
+    }
+
+    public int getFlagsRemaining() {
+        return flags_remaining;
+    }
+
+    public boolean isGameOver() {
+        return game_over;
+    }
+
+    public boolean isWon() {
+        return won;
+    }
+
+    // Whether this action reset the game.
+    public boolean isReset() {
+        return reset;
+    }
+
+    // Whether this action is the one that ended the game.
+    public boolean hasEnded() {
+        return ended;
+    }
+
+    // When the action began, in System.nanoTime, if metrics are on.
+    public long getStarted() {
+        return started;
+    }
+
+    // Whether only the area of the cells was kept, in a copy or on a reset of a huge game, so get() can't be used.
+    public boolean isSummary() {
+        return summary;
+    }
+
+    // Rows and columns covering every changed cell (min_row > max_row if there are none).
+    public int getMinRow() {
+        area();
+        return min_row;
+    }
+
+    public int getMaxRow() {
+        area();
+        return max_row;
+    }
+
+    public int getMinCol() {
+        area();
+        return min_col;
+    }
+
+    public int getMaxCol() {
+        area();
+        return max_col;
+    }
+}
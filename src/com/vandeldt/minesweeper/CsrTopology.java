@@ -0,0 +1,115 @@
+package com.vandeldt.minesweeper;
+
+// Any shape of board, with the neighbours of every cell listed in two flat arrays (compressed sparse rows): the
+// neighbours of cell i are targets[offsets[i]] to targets[offsets[i + 1] - 1]. That is one int per cell plus one per
+// neighbour, with no object per cell, so irregular boards cost no more to hold than their edges. Regular grids work
+// their neighbours out instead, which takes no memory at all; of() turns one into this form.
+public final class CsrTopology implements Topology {
+
+    private final int board_height, board_width;
+    private final int[] offsets, targets;
+    private final int max_neighbours;
+    private final String name;
+
+    // The lists must hold each neighbour once, and cells within the board. They must also go both ways (if a is a
+    // neighbour of b, b is one of a), as Game counts a cell's mines by adding each mine to its neighbours but chords
+    // and the solver look at the cell's own. All of this is checked here.
+    public CsrTopology(int height, int width, int[] offsets, int[] targets, String name) {
+        int size = height * width;
+        if (offsets.length != size + 1 || offsets[0] != 0 || offsets[size] != targets.length) {
+            throw new IllegalArgumentException("Offsets don't cover the targets for every cell");
+        }
+
+        int max = 0;
+        for (int i = 0; i < size; i++) {
+            if (offsets[i + 1] < offsets[i]) {
+                throw new IllegalArgumentException("Offsets must not decrease, at cell " + i);
+            }
+            max = Math.max(max, offsets[i + 1] - offsets[i]);
+
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                if (targets[j] < 0 || targets[j] >= size || targets[j] == i) {
+                    throw new IllegalArgumentException("Bad neighbour " + targets[j] + " of cell " + i);
+                }
+                for (int k = offsets[i]; k < j; k++) {
+                    if (targets[k] == targets[j]) {
+                        throw new IllegalArgumentException("Neighbour " + targets[j] + " of cell " + i + " twice");
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                if (!lists(offsets, targets, targets[j], i)) {
+                    throw new IllegalArgumentException("Cell " + targets[j] + " is a neighbour of " + i +
+                            " but not the other way round");
+                }
+            }
+        }
+
+        this.board_height = height;
+        this.board_width = width;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.max_neighbours = max;
+        this.name = name;
+    }
+
+    // Whether a cell's list holds a neighbour.
+    private static boolean lists(int[] offsets, int[] targets, int cell, int neighbour) {
+        for (int k = offsets[cell]; k < offsets[cell + 1]; k++) {
+            if (targets[k] == neighbour) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The same neighbours as another topology, listed once up front, which the constructor checks go both ways.
+    public static CsrTopology of(Topology topology) {
+        int size = topology.size();
+        int[] offsets = new int[size + 1];
+        int[] scratch = new int[topology.getMaxNeighbours()];
+
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] = offsets[i] + topology.neighbours(i, scratch);
+        }
+
+        int[] targets = new int[offsets[size]];
+        for (int i = 0; i < size; i++) {
+            topology.neighbours(i, scratch);
+            System.arraycopy(scratch, 0, targets, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+
+        return new CsrTopology(topology.getHeight(), topology.getWidth(), offsets, targets,
+                "csr:" + topology.getName());
+    }
+
+    @Override
+    public int neighbours(int index, int[] into) {
+        int start = offsets[index], count = offsets[index + 1] - start;
+        System.arraycopy(targets, start, into, 0, count);
+        return count;
+    }
+
+    @Override
+    public int getMaxNeighbours() {
+        return max_neighbours;
+    }
+
+    @Override
+    public int getHeight() {
+        return board_height;
+    }
+
+    @Override
+    public int getWidth() {
+        return board_width;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
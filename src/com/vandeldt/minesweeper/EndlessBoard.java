@@ -0,0 +1,388 @@
+package com.vandeldt.minesweeper;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// A window onto an EndlessGame. The board has no edges, so rather than sitting in a scroll pane it keeps its own view
+// position and pans: drag with the middle (or Shift + left) button, use the mouse wheel (Shift for sideways) or the
+// arrow keys, and Home goes back to the first click. Only the cells in view are painted, and only their chunks are
+// generated.
+//
+// The game runs on its own engine thread, as a cascade or a lost game can run to hundreds of thousands of cells and any
+// look at the game may generate chunks. Clicks are queued to it, and after each one it works out the tiles of the
+// chunks in view that changed and hands them to the event dispatch thread, the way Board publishes change sets. Paint
+// only draws from those tiles; chunks that come into view are asked for and drawn blank until they arrive.
+public class EndlessBoard extends JPanel {
+
+    // Listener for the counters shown alongside the board, and a line about the chunks.
+    public interface StatusListener {
+        void statusChanged(int flags_placed, long num_revealed, String chunks);
+    }
+
+    // What the engine thread hands over after each command: the tiles of chunks that may have changed, a byte per cell
+    // by row (replacing every other chunk after a reset or a lost game), and the counters.
+    private static final class Update {
+        final Map<Long, byte[]> tiles = new HashMap<>();
+        boolean all;
+        int flags_placed;
+        long num_revealed;
+        boolean started;
+        int start_row, start_col;
+        String chunks;
+    }
+
+    // Cells shown when the window opens, and cells moved per arrow key press or wheel notch.
+    private static final int VIEW_ROWS = 24, VIEW_COLS = 36;
+    private static final int KEY_STEP = 4, WHEEL_STEP = 3;
+
+    // The game and the thread that runs it. Only commands on the engine touch the game.
+    private final EndlessGame game;
+    private final ExecutorService engine;
+    private final int cell_size = Cell.CELL_WIDTH;
+    private StatusListener status_listener;
+
+    // Everything below is only used on the event dispatch thread.
+
+    // Tiles of the chunks in view as last published, and chunks asked for that haven't arrived yet.
+    private final Map<Long, byte[]> shown = new HashMap<>();
+    private final Set<Long> requested = new HashSet<>();
+
+    // Rows and columns of chunks in view, and a chunk either side (none until the first paint).
+    private int view_min_cy = 1, view_max_cy = 0, view_min_cx = 1, view_max_cx = 0;
+
+    // Counters and the first click as last published.
+    private int flags_placed = 0;
+    private long num_revealed = 0;
+    private boolean started = false;
+    private int start_row, start_col;
+
+    // Board pixel at the top left of the panel. Cell (0, 0) starts in the middle of the view.
+    private long view_x = -VIEW_COLS / 2 * Cell.CELL_WIDTH, view_y = -VIEW_ROWS / 2 * Cell.CELL_HEIGHT;
+
+    // Where a pan started, while dragging.
+    private Point drag_start;
+    private long drag_view_x, drag_view_y;
+
+    // Constructor
+    public EndlessBoard(double density) {
+        this.game = new EndlessGame(new SplittableRandom().nextLong(), density);
+
+        // Single daemon thread working through a queue of commands, as in GameEngine.
+        this.engine = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "endless-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        engine.execute(() -> publish(new Update()));
+
+        this.setPreferredSize(new Dimension(VIEW_COLS * cell_size, VIEW_ROWS * cell_size));
+        this.setOpaque(true);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isMiddleMouseButton(e) || (e.isShiftDown() && SwingUtilities.isLeftMouseButton(e))) {
+                    drag_start = e.getPoint();
+                    drag_view_x = view_x;
+                    drag_view_y = view_y;
+                } else {
+                    update(e.getX(), e.getY(), e.getButton());
+                }
+            }
+
+            public void mouseDragged(MouseEvent e) {
+                if (drag_start != null) {
+                    view_x = drag_view_x - (e.getX() - drag_start.x);
+                    view_y = drag_view_y - (e.getY() - drag_start.y);
+                    repaint();
+                }
+            }
+
+            public void mouseReleased(MouseEvent e) {
+                drag_start = null;
+            }
+        };
+        this.addMouseListener(mouse);
+        this.addMouseMotionListener(mouse);
+
+        this.addMouseWheelListener(e -> {
+            if (e.isShiftDown()) {
+                pan(e.getWheelRotation() * WHEEL_STEP, 0);
+            } else {
+                pan(0, e.getWheelRotation() * WHEEL_STEP);
+            }
+        });
+
+        // Arrow keys pan, Home goes back to where the game started.
+        bind("LEFT", "panLeft", () -> pan(-KEY_STEP, 0));
+        bind("RIGHT", "panRight", () -> pan(KEY_STEP, 0));
+        bind("UP", "panUp", () -> pan(0, -KEY_STEP));
+        bind("DOWN", "panDown", () -> pan(0, KEY_STEP));
+        bind("HOME", "home", this::home);
+    }
+
+    private void bind(String key, String name, Runnable action) {
+        this.getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key), name);
+        this.getActionMap().put(name, new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    // Draw the cells that fall inside the area being repainted from the published tiles, asking the engine for any
+    // chunks that aren't there yet.
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        // Keep every chunk in view, not just the ones being repainted, from being dropped.
+        setView((rowAt(0) >> EndlessGame.CHUNK_BITS) - 1, (rowAt(getHeight() - 1) >> EndlessGame.CHUNK_BITS) + 1,
+                (colAt(0) >> EndlessGame.CHUNK_BITS) - 1, (colAt(getWidth() - 1) >> EndlessGame.CHUNK_BITS) + 1);
+
+        int first_row = rowAt(clip.y), last_row = rowAt(clip.y + clip.height - 1);
+        int first_col = colAt(clip.x), last_col = colAt(clip.x + clip.width - 1);
+
+        // Chunk coordinates never reach the bottom of a long, so it can stand for no chunk yet.
+        long chunk_key = Long.MIN_VALUE;
+        byte[] chunk = null;
+        List<Long> missing = new ArrayList<>();
+
+        TileCache tiles = TileCache.forSize(cell_size);
+        for (int i = first_row; i != last_row + 1; i++) {
+            for (int j = first_col; j != last_col + 1; j++) {
+                long key = EndlessGame.pack(i >> EndlessGame.CHUNK_BITS, j >> EndlessGame.CHUNK_BITS);
+                if (key != chunk_key) {
+                    chunk_key = key;
+                    chunk = shown.get(key);
+                    if (chunk == null && requested.add(key)) {
+                        missing.add(key);
+                    }
+                }
+
+                int tile = chunk != null ? chunk[(i & EndlessGame.MASK) << EndlessGame.CHUNK_BITS |
+                        (j & EndlessGame.MASK)] : 0;
+                tiles.draw(g, tile, (int) ((long) j * cell_size - view_x), (int) ((long) i * cell_size - view_y));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            engine.execute(() -> {
+                Update update = new Update();
+                for (long key : missing) {
+                    render(update, (int) (key >> 32), (int) key);
+                }
+                publish(update);
+            });
+        }
+    }
+
+    // Change the chunks in view, forgetting the tiles of any that have left it and telling the game which to keep.
+    private void setView(int min_cy, int max_cy, int min_cx, int max_cx) {
+        if (min_cy == view_min_cy && max_cy == view_max_cy && min_cx == view_min_cx && max_cx == view_max_cx) {
+            return;
+        }
+
+        view_min_cy = min_cy;
+        view_max_cy = max_cy;
+        view_min_cx = min_cx;
+        view_max_cx = max_cx;
+        shown.keySet().removeIf(key -> !inView(key));
+        engine.execute(() -> game.setView(min_cy, max_cy, min_cx, max_cx));
+    }
+
+    private boolean inView(long key) {
+        int chunk_row = (int) (key >> 32), chunk_col = (int) key;
+        return chunk_row >= view_min_cy && chunk_row <= view_max_cy && chunk_col >= view_min_cx &&
+                chunk_col <= view_max_cx;
+    }
+
+    // Take in what the engine published: keep the tiles of chunks still in view and repaint them, and update the
+    // counters.
+    private void apply(Update update) {
+        if (update.all) {
+            shown.clear();
+            repaint();
+        }
+
+        for (Map.Entry<Long, byte[]> entry : update.tiles.entrySet()) {
+            long key = entry.getKey();
+            requested.remove(key);
+            if (inView(key)) {
+                shown.put(key, entry.getValue());
+                if (!update.all) {
+                    repaintChunk((int) (key >> 32), (int) key);
+                }
+            }
+        }
+
+        flags_placed = update.flags_placed;
+        num_revealed = update.num_revealed;
+        started = update.started;
+        start_row = update.start_row;
+        start_col = update.start_col;
+        if (status_listener != null) {
+            status_listener.statusChanged(flags_placed, num_revealed, update.chunks);
+        }
+    }
+
+    // Repaint the part of a chunk inside the panel.
+    private void repaintChunk(int chunk_row, int chunk_col) {
+        long size = (long) EndlessGame.CHUNK * cell_size;
+        long left = Math.max(chunk_col * size - view_x, 0), top = Math.max(chunk_row * size - view_y, 0);
+        long right = Math.min((chunk_col + 1) * size - view_x, getWidth());
+        long bottom = Math.min((chunk_row + 1) * size - view_y, getHeight());
+        if (left < right && top < bottom) {
+            repaint((int) left, (int) top, (int) (right - left), (int) (bottom - top));
+        }
+    }
+
+    // Engine thread
+
+    // Play a click, then publish the chunks in view that it changed, or all of them if it lost the game.
+    private void play(int row, int col, int button) {
+        boolean was_over = game.isGameOver();
+        game.update(row, col, button);
+
+        Update update = new Update();
+        update.all = game.isGameOver() && !was_over;
+        int min_cy = game.getChangedMinRow() >> EndlessGame.CHUNK_BITS;
+        int max_cy = game.getChangedMaxRow() >> EndlessGame.CHUNK_BITS;
+        int min_cx = game.getChangedMinCol() >> EndlessGame.CHUNK_BITS;
+        int max_cx = game.getChangedMaxCol() >> EndlessGame.CHUNK_BITS;
+
+        for (int cy = game.getViewMinChunkRow(); cy <= game.getViewMaxChunkRow(); cy++) {
+            for (int cx = game.getViewMinChunkCol(); cx <= game.getViewMaxChunkCol(); cx++) {
+                if (update.all || (cy >= min_cy && cy <= max_cy && cx >= min_cx && cx <= max_cx)) {
+                    render(update, cy, cx);
+                }
+            }
+        }
+        publish(update);
+    }
+
+    // Start a new board, and publish every chunk in view.
+    private void restart(long seed) {
+        game.reset(seed);
+
+        Update update = new Update();
+        update.all = true;
+        for (int cy = game.getViewMinChunkRow(); cy <= game.getViewMaxChunkRow(); cy++) {
+            for (int cx = game.getViewMinChunkCol(); cx <= game.getViewMaxChunkCol(); cx++) {
+                render(update, cy, cx);
+            }
+        }
+        publish(update);
+    }
+
+    // Add the tiles of a chunk to an update.
+    private void render(Update update, int chunk_row, int chunk_col) {
+        byte[] tiles = new byte[EndlessGame.CHUNK * EndlessGame.CHUNK];
+        int first_row = chunk_row << EndlessGame.CHUNK_BITS, first_col = chunk_col << EndlessGame.CHUNK_BITS;
+        for (int r = 0; r < EndlessGame.CHUNK; r++) {
+            for (int c = 0; c < EndlessGame.CHUNK; c++) {
+                tiles[r << EndlessGame.CHUNK_BITS | c] = (byte) tile(first_row + r, first_col + c);
+            }
+        }
+        update.tiles.put(EndlessGame.pack(chunk_row, chunk_col), tiles);
+    }
+
+    // Fill in the counters and hand an update to the event dispatch thread.
+    private void publish(Update update) {
+        update.flags_placed = game.getFlagsPlaced();
+        update.num_revealed = game.getNumRevealed();
+        update.started = game.isStarted();
+        update.start_row = game.getStartRow();
+        update.start_col = game.getStartCol();
+        update.chunks = String.format(" Chunks: %d explored, %d cached, %d generated, %d dropped (%.1f MB)",
+                game.getTouchedChunks(), game.getCachedChunks(), game.getGeneratedChunks(), game.getEvictedChunks(),
+                game.getMemoryBytes() / 1048576.0);
+        SwingUtilities.invokeLater(() -> apply(update));
+    }
+
+    // Same tiles as a Game's cells: highlight whatever ended the game and show the mines once it's lost.
+    private int tile(int row, int col) {
+        State state = game.getState(row, col);
+
+        int background;
+        if (game.isTripped(row, col)) {
+            background = Cell.BG_TRIPPED;
+        } else if (game.isProxyTripped(row, col)) {
+            background = Cell.BG_PROXY_TRIPPED;
+        } else if (state == State.REVEALED) {
+            background = Cell.BG_REVEALED;
+        } else {
+            background = Cell.BG_DEFAULT;
+        }
+
+        return background * Cell.CONTENTS + Cell.content(state, game.isGameOver(),
+                game.isGameOver() && game.isMine(row, col), game.isTripped(row, col),
+                state == State.REVEALED ? game.getAdjacentMines(row, col) : 0);
+    }
+
+    // Queue a click at a point on the panel. The engine publishes what it changed.
+    private void update(int x, int y, int mouse_button) {
+        int button = mouse_button == MouseEvent.BUTTON1 ? Game.LEFT_CLICK
+                : mouse_button == MouseEvent.BUTTON3 ? Game.RIGHT_CLICK : -1;
+        if (button < 0) {
+            return;
+        }
+
+        int row = rowAt(y), col = colAt(x);
+        engine.execute(() -> play(row, col, button));
+    }
+
+    // Move the view by whole cells.
+    public void pan(int cols, int rows) {
+        view_x += (long) cols * cell_size;
+        view_y += (long) rows * cell_size;
+        repaint();
+    }
+
+    // Centre the view on the first click (or the origin before there is one).
+    public void home() {
+        long row = started ? start_row : 0, col = started ? start_col : 0;
+        view_x = col * cell_size + cell_size / 2 - getWidth() / 2;
+        view_y = row * cell_size + cell_size / 2 - getHeight() / 2;
+        repaint();
+    }
+
+    // Start a new board, back at the origin.
+    public void reset() {
+        long seed = new SplittableRandom().nextLong();
+        engine.execute(() -> restart(seed));
+        started = false;
+        home();
+    }
+
+    // Cell under a pixel of the panel. Columns and rows wrap round at the edges of an int, like the board.
+    private int rowAt(int y) {
+        return (int) Math.floorDiv(view_y + y, cell_size);
+    }
+
+    private int colAt(int x) {
+        return (int) Math.floorDiv(view_x + x, cell_size);
+    }
+
+    // Getters and setters
+
+    public void setStatusListener(StatusListener status_listener) {
+        this.status_listener = status_listener;
+    }
+}
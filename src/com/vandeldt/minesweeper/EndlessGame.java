@@ -0,0 +1,496 @@
+package com.vandeldt.minesweeper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// A game on a board with no edges, for endless mode. The board is split into square chunks whose mines come from the
+// seed and the chunk's coordinates alone, so a chunk is only generated when a reveal, cascade or paint first looks at
+// it, and can be thrown away and generated again identically later. Chunks where something has been revealed or
+// flagged keep their cell states while any cell is out of its default state; the rest, including chunks whose flags
+// have all been taken off again, are a least recently used cache that never drops chunks in view. Memory follows the
+// area explored, not the size of the board (which is 2^32 cells across, wrapping at the edges).
+//
+// The rules are the same as Game's, apart from there being no way to win: the score is the cells revealed so far. The
+// first click is always safe, as its cell and neighbours never hold mines. Everything runs on one thread, as even
+// looking at a cell may generate its chunk (EndlessBoard's engine thread).
+public class EndlessGame {
+
+    // Chunks are CHUNK x CHUNK cells.
+    static final int CHUNK_BITS = 6;
+    static final int CHUNK = 1 << CHUNK_BITS;
+    static final int MASK = CHUNK - 1;
+
+    // Mine densities allowed. Much below the minimum, blank cells link up so far that one click could cascade on for
+    // ever.
+    public static final double MIN_DENSITY = 0.15;
+    public static final double MAX_DENSITY = 0.5;
+
+    // Most cells a single action may open, across every cascade a chord starts. A cascade that gets this far stops, and
+    // the blank cells at its edge can be chorded to carry on.
+    static final int CASCADE_LIMIT = 1 << 18;
+
+    // Untouched chunks (about 600 bytes each) kept before the least recently used are dropped.
+    private static final int CACHE_LIMIT = 4096;
+
+    private static final State[] STATES = State.values();
+    private static final byte DEFAULT = (byte) State.DEFAULT.ordinal();
+    private static final byte REVEALED = (byte) State.REVEALED.ordinal();
+    private static final byte FLAGGED = (byte) State.FLAGGED.ordinal();
+    private static final byte POSSIBLE = (byte) State.POSSIBLE.ordinal();
+
+    // One chunk: a long of mine bits per row, and the cell states while any cell is out of its default state.
+    private static final class Chunk {
+        final long[] mines = new long[CHUNK];
+        byte[] states;
+        int num_set;
+    }
+
+    private final double density;
+    private long seed;
+
+    // Chunks with cell states, and the cache of the rest in least recently used order. The last chunk looked up is
+    // remembered, as most lookups land in the same chunk as the one before.
+    private final Map<Long, Chunk> touched = new HashMap<>();
+    private final LinkedHashMap<Long, Chunk> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private long last_key;
+    private Chunk last_chunk;
+    private long generated = 0, evicted = 0;
+
+    // Chunks in view, which are never dropped.
+    private int view_min_cx, view_max_cx, view_min_cy, view_max_cy;
+
+    // The first click, whose cell and neighbours are kept clear.
+    private boolean started = false;
+    private int start_row, start_col;
+
+    private long num_revealed = 0;
+    private int flags_placed = 0;
+    private boolean game_over = false;
+    private boolean tripped = false, proxy_tripped = false;
+    private int tripped_row, tripped_col, proxy_row, proxy_col;
+
+    // Cells waiting to spread in a cascade, as (row << 32 | col), how many cells the action so far has opened, and the
+    // area the last action changed.
+    private long[] work = new long[1024];
+    private int action_opened;
+    private int min_row, max_row, min_col, max_col;
+
+    // Constructor
+    public EndlessGame(long seed, double density) {
+        this.seed = seed;
+        this.density = Math.max(MIN_DENSITY, Math.min(MAX_DENSITY, density));
+    }
+
+    // Start a new game on the board given by seed.
+    public void reset(long seed) {
+        this.seed = seed;
+        touched.clear();
+        cache.clear();
+        last_chunk = null;
+        started = false;
+        num_revealed = 0;
+        flags_placed = 0;
+        game_over = false;
+        tripped = false;
+        proxy_tripped = false;
+    }
+
+    // Same rules as a click on the board. getChangedArea() then covers every cell that changed.
+    public void update(int row, int col, int button) {
+        min_row = min_col = Integer.MAX_VALUE;
+        max_row = max_col = Integer.MIN_VALUE;
+        action_opened = 0;
+        if (game_over) {
+            return;
+        }
+
+        if (button == Game.LEFT_CLICK && getState(row, col) == State.DEFAULT) {
+            reveal(row, col);
+        } else if (button == Game.LEFT_CLICK && getState(row, col) == State.REVEALED) {
+            chord(row, col);
+        } else if (button == Game.RIGHT_CLICK) {
+            flag(row, col);
+        }
+    }
+
+    private void reveal(int row, int col) {
+        if (!started) {
+            start(row, col);
+        }
+
+        if (isMine(row, col)) {
+            tripped = true;
+            tripped_row = row;
+            tripped_col = col;
+            game_over = true;
+            changed(row, col);
+            return;
+        }
+
+        cascade(row, col);
+    }
+
+    // Open a cell and, breadth first, everything a blank cell spreads to, until the action has opened CASCADE_LIMIT
+    // cells.
+    private void cascade(int row, int col) {
+        if (getState(row, col) != State.DEFAULT || action_opened >= CASCADE_LIMIT) {
+            return;
+        }
+
+        int head = 0, tail = 0;
+        open(row, col);
+        action_opened++;
+        work[tail++] = pack(row, col);
+
+        while (head < tail) {
+            long current = work[head++];
+            int r = (int) (current >> 32), c = (int) current;
+            if (getAdjacentMines(r, c) != 0) {
+                continue;
+            }
+
+            for (int d_row = -1; d_row <= 1; d_row++) {
+                for (int d_col = -1; d_col <= 1; d_col++) {
+                    if ((d_row != 0 || d_col != 0) && action_opened < CASCADE_LIMIT &&
+                            getState(r + d_row, c + d_col) == State.DEFAULT) {
+                        open(r + d_row, c + d_col);
+                        action_opened++;
+                        if (tail == work.length) {
+                            work = Arrays.copyOf(work, Math.min(CASCADE_LIMIT, tail * 2));
+                        }
+                        work[tail++] = pack(r + d_row, c + d_col);
+                    }
+                }
+            }
+        }
+    }
+
+    // Reveal every neighbour once enough of them are flagged, or trip the mine among them if a flag is wrong.
+    private void chord(int row, int col) {
+        int flagged_neighbours = 0, mine_row = 0, mine_col = 0;
+        boolean mine_found = false;
+
+        for (int d_row = -1; d_row <= 1; d_row++) {
+            for (int d_col = -1; d_col <= 1; d_col++) {
+                if (d_row == 0 && d_col == 0) {
+                    continue;
+                }
+                if (getState(row + d_row, col + d_col) == State.FLAGGED) {
+                    flagged_neighbours++;
+                } else if (isMine(row + d_row, col + d_col)) {
+                    mine_found = true;
+                    mine_row = row + d_row;
+                    mine_col = col + d_col;
+                }
+            }
+        }
+
+        if (flagged_neighbours != getAdjacentMines(row, col)) {
+            return;
+        }
+
+        if (mine_found) {
+            tripped = true;
+            tripped_row = mine_row;
+            tripped_col = mine_col;
+            proxy_tripped = true;
+            proxy_row = row;
+            proxy_col = col;
+            game_over = true;
+            changed(mine_row, mine_col);
+            changed(row, col);
+            return;
+        }
+
+        for (int d_row = -1; d_row <= 1; d_row++) {
+            for (int d_col = -1; d_col <= 1; d_col++) {
+                cascade(row + d_row, col + d_col);
+            }
+        }
+    }
+
+    private void flag(int row, int col) {
+        switch (getState(row, col)) {
+            case DEFAULT -> {
+                setState(row, col, FLAGGED);
+                flags_placed++;
+            }
+            case FLAGGED -> {
+                setState(row, col, POSSIBLE);
+                flags_placed--;
+            }
+            case POSSIBLE -> setState(row, col, DEFAULT);
+            default -> {
+                return;
+            }
+        }
+
+        changed(row, col);
+    }
+
+    private void open(int row, int col) {
+        setState(row, col, REVEALED);
+        num_revealed++;
+        changed(row, col);
+    }
+
+    // Keep mines out of the first click and its neighbours, in chunks made so far and all those made from now on.
+    private void start(int row, int col) {
+        started = true;
+        start_row = row;
+        start_col = col;
+
+        for (int d_row = -1; d_row <= 1; d_row++) {
+            for (int d_col = -1; d_col <= 1; d_col++) {
+                int r = row + d_row, c = col + d_col;
+                chunk(r, c).mines[r & MASK] &= ~(1L << c);
+            }
+        }
+    }
+
+    private void changed(int row, int col) {
+        min_row = Math.min(min_row, row);
+        max_row = Math.max(max_row, row);
+        min_col = Math.min(min_col, col);
+        max_col = Math.max(max_col, col);
+    }
+
+    static long pack(int row, int col) {
+        return (long) row << 32 | (col & 0xFFFFFFFFL);
+    }
+
+    // Chunks
+
+    // The chunk holding a cell, generating it if need be.
+    private Chunk chunk(int row, int col) {
+        long key = pack(row >> CHUNK_BITS, col >> CHUNK_BITS);
+        if (last_chunk != null && key == last_key) {
+            return last_chunk;
+        }
+
+        Chunk chunk = touched.get(key);
+        if (chunk == null) {
+            chunk = cache.get(key);
+        }
+        if (chunk == null) {
+            chunk = generate(row >> CHUNK_BITS, col >> CHUNK_BITS);
+            cache.put(key, chunk);
+            evict(key);
+        }
+
+        last_key = key;
+        last_chunk = chunk;
+        return chunk;
+    }
+
+    // Mines for a chunk, each cell independently with the board's density from a generator seeded by the board seed
+    // and the chunk's coordinates.
+    private Chunk generate(int chunk_row, int chunk_col) {
+        Chunk chunk = new Chunk();
+        SplittableRandom rnd = new SplittableRandom(seed ^ chunk_row * 0x9E3779B97F4A7C15L ^
+                chunk_col * 0xC2B2AE3D27D4EB4FL);
+
+        for (int r = 0; r < CHUNK; r++) {
+            long bits = 0;
+            for (int c = 0; c < CHUNK; c++) {
+                if (rnd.nextDouble() < density) {
+                    bits |= 1L << c;
+                }
+            }
+            chunk.mines[r] = bits;
+        }
+
+        // The first click's safe zone, if it reaches into this chunk.
+        if (started) {
+            for (int d_row = -1; d_row <= 1; d_row++) {
+                for (int d_col = -1; d_col <= 1; d_col++) {
+                    int r = start_row + d_row, c = start_col + d_col;
+                    if (r >> CHUNK_BITS == chunk_row && c >> CHUNK_BITS == chunk_col) {
+                        chunk.mines[r & MASK] &= ~(1L << c);
+                    }
+                }
+            }
+        }
+
+        generated++;
+        return chunk;
+    }
+
+    // Drop least recently used chunks while there are too many, skipping those in view and the one just added.
+    private void evict(long keep) {
+        Iterator<Map.Entry<Long, Chunk>> entries = cache.entrySet().iterator();
+        while (cache.size() > CACHE_LIMIT && entries.hasNext()) {
+            long key = entries.next().getKey();
+            int chunk_row = (int) (key >> 32), chunk_col = (int) key;
+            if (key != keep && (chunk_row < view_min_cy || chunk_row > view_max_cy || chunk_col < view_min_cx ||
+                    chunk_col > view_max_cx)) {
+                entries.remove();
+                evicted++;
+                if (key == last_key) {
+                    last_chunk = null;
+                }
+            }
+        }
+    }
+
+    // Set the rows and columns of chunks in view, which are kept.
+    public void setView(int min_chunk_row, int max_chunk_row, int min_chunk_col, int max_chunk_col) {
+        view_min_cy = min_chunk_row;
+        view_max_cy = max_chunk_row;
+        view_min_cx = min_chunk_col;
+        view_max_cx = max_chunk_col;
+    }
+
+    // Cells
+
+    public boolean isMine(int row, int col) {
+        return (chunk(row, col).mines[row & MASK] >>> col & 1) != 0;
+    }
+
+    public State getState(int row, int col) {
+        byte[] states = chunk(row, col).states;
+        return states == null ? State.DEFAULT : STATES[states[(row & MASK) << CHUNK_BITS | (col & MASK)]];
+    }
+
+    // Give a cell a new state, moving its chunk out of the cache when a cell first leaves its default state, and back
+    // (where it can be dropped) once every cell has gone back to it.
+    private void setState(int row, int col, byte state) {
+        Chunk chunk = chunk(row, col);
+        long key = pack(row >> CHUNK_BITS, col >> CHUNK_BITS);
+        if (chunk.states == null) {
+            chunk.states = new byte[CHUNK * CHUNK];
+            cache.remove(key);
+            touched.put(key, chunk);
+        }
+
+        int cell = (row & MASK) << CHUNK_BITS | (col & MASK);
+        chunk.num_set += (state != DEFAULT ? 1 : 0) - (chunk.states[cell] != DEFAULT ? 1 : 0);
+        chunk.states[cell] = state;
+
+        if (chunk.num_set == 0) {
+            chunk.states = null;
+            touched.remove(key);
+            cache.put(key, chunk);
+            evict(key);
+        }
+    }
+
+    public int getAdjacentMines(int row, int col) {
+        return Integer.bitCount(window(row - 1, col)) + Integer.bitCount(window(row, col) & 5) +
+                Integer.bitCount(window(row + 1, col));
+    }
+
+    // Mine bits of a cell and its left and right neighbours (bit 1 for the cell itself).
+    private int window(int row, int col) {
+        long bits = chunk(row, col).mines[row & MASK];
+        int c = col & MASK;
+        if (c > 0 && c < MASK) {
+            return (int) (bits >>> (c - 1)) & 7;
+        }
+        return (isMine(row, col - 1) ? 1 : 0) | (int) (bits >>> c & 1) << 1 | (isMine(row, col + 1) ? 4 : 0);
+    }
+
+    // Getters
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public double getDensity() {
+        return density;
+    }
+
+    public long getNumRevealed() {
+        return num_revealed;
+    }
+
+    public int getFlagsPlaced() {
+        return flags_placed;
+    }
+
+    public boolean isGameOver() {
+        return game_over;
+    }
+
+    public boolean isTripped(int row, int col) {
+        return tripped && row == tripped_row && col == tripped_col;
+    }
+
+    public boolean isProxyTripped(int row, int col) {
+        return proxy_tripped && row == proxy_row && col == proxy_col;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public int getStartRow() {
+        return start_row;
+    }
+
+    public int getStartCol() {
+        return start_col;
+    }
+
+    // Rows and columns of chunks in view.
+    public int getViewMinChunkRow() {
+        return view_min_cy;
+    }
+
+    public int getViewMaxChunkRow() {
+        return view_max_cy;
+    }
+
+    public int getViewMinChunkCol() {
+        return view_min_cx;
+    }
+
+    public int getViewMaxChunkCol() {
+        return view_max_cx;
+    }
+
+    // What the last action changed, as an inclusive range of rows and columns (empty if nothing changed).
+    public int getChangedMinRow() {
+        return min_row;
+    }
+
+    public int getChangedMaxRow() {
+        return max_row;
+    }
+
+    public int getChangedMinCol() {
+        return min_col;
+    }
+
+    public int getChangedMaxCol() {
+        return max_col;
+    }
+
+    // Chunks holding cell states, and chunks cached for their mines alone.
+    public int getTouchedChunks() {
+        return touched.size();
+    }
+
+    public int getCachedChunks() {
+        return cache.size();
+    }
+
+    // Chunks generated (including again after being dropped) and dropped so far.
+    public long getGeneratedChunks() {
+        return generated;
+    }
+
+    public long getEvictedChunks() {
+        return evicted;
+    }
+
+    // Roughly how much memory the chunks take.
+    public long getMemoryBytes() {
+        long mines = 8L * CHUNK + 64;
+        return touched.size() * (mines + CHUNK * CHUNK) + cache.size() * mines;
+    }
+}
@@ -0,0 +1,84 @@
+package com.vandeldt.minesweeper;
+
+import javax.swing.*;
+import java.awt.*;
+
+// Window for endless mode: flags placed, a reset button and the score (cells revealed) above the board, and how much
+// of the board has been generated below it.
+public class EndlessMinesweeper extends JFrame {
+
+    // Interface components
+    public JLabel lbl_flags;
+    public JLabel lbl_score;
+    public JLabel lbl_chunks;
+
+    private final EndlessBoard board;
+
+    // Constructor
+    public EndlessMinesweeper(double density) {
+
+        // Create JFrame and set up window
+        super("Minesweeper - Endless");
+        Cell.setWindowIcon(this);
+        this.setDefaultCloseOperation(EXIT_ON_CLOSE);
+
+        this.setLayout(new GridBagLayout());
+        GridBagConstraints constraints = new GridBagConstraints();
+
+        this.board = new EndlessBoard(density);
+
+        // Only the board row grows if the window is resized.
+        constraints.weightx = 1;
+        constraints.weighty = 0;
+        constraints.fill = 1;
+
+        // Flags placed label
+        lbl_flags = new JLabel("0");
+        lbl_flags.setHorizontalAlignment(0);
+        constraints.gridx = 1;
+        constraints.gridy = 1;
+        constraints.weightx = 0.45;
+        add(lbl_flags, constraints);
+
+        // Score label
+        lbl_score = new JLabel("0");
+        lbl_score.setHorizontalAlignment(0);
+        constraints.gridx = 3;
+        constraints.gridy = 1;
+        constraints.weightx = 0.45;
+        add(lbl_score, constraints);
+
+        // Reset button
+        JButton btn_reset = new JButton("Reset");
+        constraints.gridx = 2;
+        constraints.gridy = 1;
+        constraints.weightx = 0.1;
+        btn_reset.addActionListener(e -> board.reset());
+        btn_reset.setFocusable(false);
+        add(btn_reset, constraints);
+
+        // Add board to window
+        constraints.gridx = 1;
+        constraints.gridy = 2;
+        constraints.gridwidth = 3;
+        constraints.weighty = 1;
+        add(board, constraints);
+
+        // Chunk statistics
+        lbl_chunks = new JLabel(" ");
+        constraints.gridy = 3;
+        constraints.weighty = 0;
+        add(lbl_chunks, constraints);
+
+        // Keep labels up to date as the game changes.
+        board.setStatusListener((flags_placed, num_revealed, chunks) -> {
+            lbl_flags.setText(Integer.toString(flags_placed));
+            lbl_score.setText(Long.toString(num_revealed));
+            lbl_chunks.setText(chunks);
+        });
+
+        // Show window
+        this.pack();
+        this.setVisible(true);
+    }
+}
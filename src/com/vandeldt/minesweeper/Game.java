@@ -0,0 +1,837 @@
+package com.vandeldt.minesweeper;
+
+import com.vandeldt.minesweeper.metrics.Metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+// A single game of Minesweeper. Nothing is shared between instances, so any number of games can run side by side, each
+// on its own thread (a game itself must only be changed by one thread at a time, see GameEngine).
+public class Game {
+
+    // Mouse buttons, matching MouseEvent.BUTTON1 / BUTTON3.
+    public static final int LEFT_CLICK = 1;
+    public static final int RIGHT_CLICK = 3;
+
+    // State values stored in the states array (State ordinals).
+    private static final State[] STATES = State.values();
+    private static final byte DEFAULT = (byte) State.DEFAULT.ordinal();
+    private static final byte REVEALED = (byte) State.REVEALED.ordinal();
+    private static final byte FLAGGED = (byte) State.FLAGGED.ordinal();
+    private static final byte POSSIBLE = (byte) State.POSSIBLE.ordinal();
+
+    // Eight cells' states at a time, as a long.
+    private static final VarHandle BYTES_AS_LONG =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // Square boards with at least one mine to this many cells have their mines placed on their own and every cell
+    // counted afterwards (see MineCounter), which beats adding each mine to its neighbours once there are that many.
+    private static final int COUNT_ALL_CELLS_PER_MINE = 16;
+
+    // Lists of cells start this long and grow as the game needs them. The touched list stops at MAX_TOUCHED_LIST cells
+    // (4 MB), after which reset goes over the touched bits instead, and an opened list grown past that is let go at
+    // the next reset, so neither is kept at an int per cell on a huge board.
+    private static final int LIST_START = 256;
+    static final int MAX_TOUCHED_LIST = 1 << 20;
+
+    // Initialise game attributes. Every cell lives at index (row * width + col) of the flat arrays, and the topology
+    // says which cells are next to which.
+    private final Topology topology;
+    private final int board_height, board_width, num_mines;
+    private final long[] mines;
+    private final byte[] states;
+    private final byte[] adjacent;
+    private int[] opened = new int[LIST_START];
+    private int num_opened = 0;
+
+    // Everything that has changed since the last reset, so resetting only has to undo those cells.
+    private final int[] mine_list;
+    private int num_placed = 0;
+    private int[] shown_mines; // Kept for a reset's change set, as placing the new mines overwrites mine_list.
+    private final long[] touched;
+    private int[] touched_list = new int[LIST_START];
+    private int num_touched = 0; // Including any past the end of the list.
+
+    // Touched cells that were first flagged rather than revealed, so the only ones that can be flagged. Along with the
+    // mines they are all that can change when the game is lost, so ending the game never has to look at the rest.
+    private int[] flag_list = new int[64];
+    private int num_flag_cells = 0;
+
+    private int num_revealed = 0;
+    private int flags_remaining;
+    private boolean game_over = false;
+    private int tripped = -1, proxy_tripped = -1;
+
+    // What the last action changed, for views to redraw in one go.
+    private final ChangeSet changes;
+    private boolean was_over;
+
+    // Whether the last action changed anything: opened or flagged a cell, or ended the game.
+    private boolean changed;
+    private long action_count = 0;
+    private long action_start; // For metrics only.
+
+    // Mine placement. The same seed always produces the same board. In safe zone mode mines are only placed once the
+    // first cell is clicked, keeping them out of it and its neighbours.
+    private final boolean safe_zone;
+    private final int[] zone;
+    private long seed;
+    private final SeedRandom rnd;
+    private boolean armed = false;
+
+    // Whether adjacent counts are worked out for the whole board once the mines are in (see
+    // COUNT_ALL_CELLS_PER_MINE), and what counts them, made the first time it's needed.
+    private final boolean count_all;
+    private MineCounter counter;
+
+    // Created once so placing mines doesn't allocate.
+    private final IntPredicate is_mine = this::isMine;
+    private final IntConsumer place_mine = this::placeMine;
+
+    // Scratch space for a cell's neighbours: one for single steps, one for reveal cascades, which chords run inside.
+    private final int[] neighbours, spread;
+
+    // Constructors
+    public Game(int height, int width, int mines) {
+        this(height, width, mines, new SplittableRandom().nextLong(), false);
+    }
+
+    public Game(int height, int width, int mines, long seed) {
+        this(height, width, mines, seed, false);
+    }
+
+    public Game(int height, int width, int mines, long seed, boolean safe_zone) {
+        this(height, width, mines, seed, safe_zone, !safe_zone);
+    }
+
+    // A game on a board of any shape (see Topology).
+    public Game(Topology topology, int mines, long seed, boolean safe_zone) {
+        this(topology, mines, seed, safe_zone, !safe_zone);
+    }
+
+    // Constructors that only place the mines straight away if asked, e.g. not when a saved game is about to be loaded.
+    Game(int height, int width, int mines, long seed, boolean safe_zone, boolean place_mines) {
+        this(new SquareTopology(height, width), mines, seed, safe_zone, place_mines);
+    }
+
+    Game(Topology topology, int mines, long seed, boolean safe_zone, boolean place_mines) {
+        int height = topology.getHeight(), width = topology.getWidth();
+
+        // Set attributes
+        this.topology = topology;
+        this.board_height = height;
+        this.board_width = width;
+        this.num_mines = mines;
+        this.safe_zone = safe_zone;
+        this.seed = seed;
+        this.rnd = new SeedRandom(seed);
+
+        // One bit per cell for mines, one byte per cell for state and one for the number of adjacent mines. With the
+        // touched bits and the mine list that comes to a little over two bytes per cell, plus four per mine; the
+        // lists of opened and touched cells only grow as far as the game gets.
+        this.mines = new long[(height * width + 63) >>> 6];
+        this.states = new byte[height * width];
+        this.adjacent = new byte[height * width];
+
+        this.mine_list = new int[mines];
+        this.touched = new long[this.mines.length];
+        this.changes = new ChangeSet(width);
+
+        this.neighbours = new int[topology.getMaxNeighbours()];
+        this.spread = new int[topology.getMaxNeighbours()];
+        this.zone = new int[topology.getMaxNeighbours() + 1];
+
+        this.count_all = topology instanceof SquareTopology &&
+                (long) mines * COUNT_ALL_CELLS_PER_MINE >= (long) height * width;
+
+        flags_remaining = mines;
+
+        // Place mines so that the game can begin (or wait for the first click in safe zone mode).
+        if (place_mines) {
+            armMines(-1);
+        }
+
+    }
+
+    // Game update method, same rules as a click on the board. Returns the number of cells opened, and getChanges()
+    // describes everything that changed.
+    public int update(int index, int button) {
+        beginAction();
+
+        // Make sure game hasn't ended yet.
+        if (!game_over && button == LEFT_CLICK) {
+            switch (getState(index)) {
+                case DEFAULT -> revealAction(index);
+                case REVEALED -> chordAction(index);
+            }
+        } else if (!game_over && button == RIGHT_CLICK) {
+            flagAction(index);
+        }
+
+        return endAction();
+    }
+
+    // Left click on an unrevealed cell. Returns the number of cells opened.
+    public int reveal(int index) {
+        beginAction();
+        revealAction(index);
+        return endAction();
+    }
+
+    // Left click on a revealed cell: reveal all neighbours if enough of them are flagged. Returns the number of cells
+    // opened.
+    public int chord(int index) {
+        beginAction();
+        chordAction(index);
+        return endAction();
+    }
+
+    // Right click behaviour (Flagging)
+    public void flag(int index) {
+        beginAction();
+        flagAction(index);
+        endAction();
+    }
+
+    private void beginAction() {
+        if (Metrics.ENABLED) {
+            action_start = System.nanoTime();
+        }
+        action_count++;
+        was_over = game_over;
+        changed = false;
+        changes.clear(action_start);
+        num_opened = 0;
+    }
+
+    // Collect what the action changed. Losing also shows every mine and wrong flag, so the action that loses includes
+    // those too, straight from the mine and flag lists rather than by looking over the board. Clicks after that change
+    // nothing.
+    private int endAction() {
+        boolean ended = game_over && !was_over;
+        changed |= num_opened > 0 || ended;
+        changes.add(opened, num_opened);
+        if (ended && !isWon()) {
+            changes.add(mine_list, num_placed);
+            changes.add(flag_list, num_flag_cells);
+            if (proxy_tripped >= 0) {
+                changes.add(proxy_tripped);
+            }
+        }
+
+        changes.finish(num_opened, num_revealed, flags_remaining, game_over, isWon(), ended);
+
+        if (Metrics.ENABLED) {
+            Metrics.ACTION.record(System.nanoTime() - action_start);
+            Metrics.CELLS_PER_ACTION.record(num_opened);
+        }
+        return num_opened;
+    }
+
+    private void revealAction(int index) {
+        if (game_over || states[index] != DEFAULT) {
+            return;
+        }
+
+        if (!armed) { // Place mines around the first click in safe zone mode.
+            armMines(index);
+        } else if (isMine(index) && num_revealed == 0) { // Move mine if we hit it first go.
+            moveMine(index);
+        } else if (isMine(index)) { // Trip mine if not first go.
+            tripped = index;
+            endGame();
+            return;
+        }
+
+        revealCell(index);
+        checkWin();
+    }
+
+    private void chordAction(int index) {
+        if (game_over || states[index] != REVEALED) {
+            return;
+        }
+
+        ChordResult result = getChordStatus(index);
+        if (result == ChordResult.CHORDABLE) {
+            chordCell(index);
+            checkWin();
+        } else if (result == ChordResult.NEIGHBOUR_IS_MINE) {
+            tripped = findUnflaggedMine(index);
+            proxy_tripped = index;
+            endGame();
+        }
+    }
+
+    private void flagAction(int index) {
+        if (game_over) {
+            return;
+        }
+
+        switch (getState(index)) {
+            case DEFAULT -> {
+                states[index] = FLAGGED;
+                touch(index);
+
+                // Remove flag from remaining pool
+                flags_remaining--;
+            }
+            case FLAGGED -> {
+                states[index] = POSSIBLE;
+
+                // Add flag back to remaining pool.
+                flags_remaining++;
+            }
+            case POSSIBLE -> states[index] = DEFAULT;
+            default -> {
+                return;
+            }
+        }
+
+        changed = true;
+        changes.add(index);
+    }
+
+    // Method to check whether we can chord a cell
+    public ChordResult getChordStatus(int index) {
+        int count = topology.neighbours(index, neighbours);
+        int flagged_neighbours = 0;
+        boolean mine_found = false;
+
+        // Loop over each neighbour to count flags and see if there are any unflagged mines.
+        for (int i = 0; i < count; i++) {
+            int neighbour = neighbours[i];
+            if (states[neighbour] == FLAGGED) {
+                flagged_neighbours++;
+            } else if (isMine(neighbour)) {
+                mine_found = true;
+            }
+        }
+
+        // If there are enough flagged neighbours...
+        if (flagged_neighbours == getAdjacentMines(index)) {
+            // ... check we didn't find any unflagged mines.
+            if (mine_found) {
+                return ChordResult.NEIGHBOUR_IS_MINE;
+            } else {
+                // If no mines we can chord.
+                return ChordResult.CHORDABLE;
+            }
+        } else {
+            return ChordResult.NOT_ENOUGH_FLAGS;
+        }
+    }
+
+    // Find the neighbour that would be tripped by chording a badly flagged cell.
+    private int findUnflaggedMine(int index) {
+        int count = topology.neighbours(index, neighbours);
+        int mine_location = -1;
+
+        for (int i = 0; i < count; i++) {
+            int neighbour = neighbours[i];
+            if (states[neighbour] != FLAGGED && isMine(neighbour)) {
+                mine_location = neighbour;
+            }
+        }
+
+        return mine_location;
+    }
+
+    // Method to get the number of mines adjacent to a cell. Counts are only kept while the mines are in.
+    public int getAdjacentMines(int index) {
+        return armed ? adjacent[index] : 0;
+    }
+
+    // Reveal a single cell, flood-filling outwards from it while cells have no adjacent mines. The opened list is the
+    // work queue, so large open regions can't overflow the stack and nothing is allocated.
+    private void revealCell(int index) {
+        // Check that cell isn't already revealed or flagged first (makes chord function easier)
+        if (states[index] != DEFAULT) {
+            return;
+        }
+
+        // If for some reason we try to reveal a mine, throw an error.
+        if (isMine(index)) {
+            throw new Error("Cannot reveal a mined cell!");
+        }
+
+        // Each cell is opened once, so the list never holds more than every cell on the board. Only cells with no
+        // adjacent mines spread to their neighbours. For metrics, depth counts the rings the cascade spreads through:
+        // each ring ends where the cells opened before it started run out.
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        int first = num_opened, head = num_opened, ring_end = num_opened + 1, depth = 0;
+        open(index);
+
+        while (head < num_opened) {
+            if (Metrics.ENABLED && head == ring_end) {
+                depth++;
+                ring_end = num_opened;
+            }
+
+            int current = opened[head++];
+            if (getAdjacentMines(current) != 0) {
+                continue;
+            }
+
+            int count = topology.neighbours(current, spread);
+            for (int i = 0; i < count; i++) {
+                if (states[spread[i]] == DEFAULT) {
+                    open(spread[i]);
+                }
+            }
+        }
+
+        if (Metrics.ENABLED && num_opened - first > 1) {
+            Metrics.CASCADE.record(System.nanoTime() - start);
+            Metrics.CASCADE_SIZE.record(num_opened - first);
+            Metrics.CASCADE_DEPTH.record(depth);
+        }
+    }
+
+    // Mark a cell as revealed.
+    private void open(int index) {
+        states[index] = REVEALED;
+        touch(index);
+        num_revealed++;
+        addOpened(index);
+    }
+
+    // Add a cell to the cells opened by the current action, which doubles as the work queue for reveal cascades. Each
+    // cell is added at most once per action, so the list never needs to be longer than the board.
+    private void addOpened(int index) {
+        if (num_opened == opened.length) {
+            opened = Arrays.copyOf(opened, Math.min(opened.length * 2, states.length));
+        }
+        opened[num_opened++] = index;
+    }
+
+    // Reveal cells adjacent to this one
+    private void chordCell(int index) {
+        int count = topology.neighbours(index, neighbours);
+
+        for (int i = 0; i < count; i++) {
+            revealCell(neighbours[i]);
+        }
+    }
+
+    private void checkWin() {
+        if (num_revealed == (board_height * board_width) - num_mines) {
+            game_over = true;
+        }
+    }
+
+    private void endGame() {
+        game_over = true;
+    }
+
+    // Method to place all mines in one pass. If first_click is a cell, keep mines out of it and its neighbours, or
+    // just out of the cell itself if the board is too full for that.
+    private void armMines(int first_click) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        int num_excluded = 0;
+
+        if (first_click >= 0) {
+            // Neighbours and the clicked cell itself, in ascending index order.
+            num_excluded = topology.neighbours(first_click, zone);
+            zone[num_excluded++] = first_click;
+            Arrays.sort(zone, 0, num_excluded);
+
+            if (board_height * board_width - num_excluded < num_mines) {
+                zone[0] = first_click;
+                num_excluded = 1;
+            }
+        }
+
+        MinePlacer.place(rnd, board_height * board_width, num_mines, zone, num_excluded, is_mine, place_mine);
+        if (count_all) {
+            countAdjacent();
+        }
+        armed = true;
+
+        if (Metrics.ENABLED) {
+            Metrics.ARM_MINES.record(System.nanoTime() - start);
+        }
+    }
+
+    // Move the mine under the first click to a random free cell. Nothing is revealed yet, so every cell without a mine
+    // is free.
+    private void moveMine(int index) {
+        int free = board_height * board_width - num_mines;
+        int target = MinePlacer.nthClear(mines, board_height * board_width, rnd.nextInt(free));
+
+        setMine(target, true);
+        setMine(index, false);
+
+        // Swap it in the mine list too.
+        for (int i = 0; i < num_placed; i++) {
+            if (mine_list[i] == index) {
+                mine_list[i] = target;
+                break;
+            }
+        }
+    }
+
+    // Place a new mine, remembering it so reset can clear it again. If every cell is to be counted afterwards, only
+    // the mine bit is set.
+    private void placeMine(int index) {
+        if (count_all) {
+            mines[index >>> 6] |= 1L << index;
+        } else {
+            setMine(index, true);
+        }
+        mine_list[num_placed++] = index;
+    }
+
+    // Remember that a cell has left its default state since the last reset.
+    private void touch(int index) {
+        if ((touched[index >>> 6] & (1L << index)) == 0) {
+            touched[index >>> 6] |= 1L << index;
+            if (num_touched < MAX_TOUCHED_LIST) {
+                if (num_touched == touched_list.length) {
+                    touched_list = Arrays.copyOf(touched_list, Math.min(num_touched * 2, MAX_TOUCHED_LIST));
+                }
+                touched_list[num_touched] = index;
+            }
+            num_touched++;
+
+            if (states[index] != REVEALED) {
+                if (num_flag_cells == flag_list.length) {
+                    flag_list = Arrays.copyOf(flag_list, num_flag_cells * 2);
+                }
+                flag_list[num_flag_cells++] = index;
+            }
+        }
+    }
+
+    // Method to reset the game, drawing the next board from the current random sequence.
+    public void reset() {
+        reset(rnd.nextLong());
+    }
+
+    // Method to reset the game to the board given by seed. getChanges() lists every cell that needs redrawing.
+    public void reset(long seed) {
+        beginAction();
+        this.seed = seed;
+        this.rnd.setSeed(seed);
+        this.armed = false;
+
+        // Reset attributes.
+        boolean mines_shown = game_over && !isWon();
+        game_over = false;
+        num_revealed = 0;
+        flags_remaining = num_mines;
+        tripped = -1;
+        proxy_tripped = -1;
+
+        // Only cells that have been revealed or flagged, and the mines, need clearing. This keeps reset proportional to
+        // how much of the board was played rather than its size. The lists are left as they are for the change set to
+        // read until the next action.
+        if (num_touched <= MAX_TOUCHED_LIST) {
+            for (int i = 0; i < num_touched; i++) {
+                int index = touched_list[i];
+                states[index] = DEFAULT;
+                touched[index >>> 6] &= ~(1L << index);
+            }
+            changes.add(touched_list, num_touched);
+        } else {
+            // Too many to have listed them all, so go over the touched bits a word at a time and redraw everything.
+            for (int word = 0; word < touched.length; word++) {
+                for (long bits = touched[word]; bits != 0; bits &= bits - 1) {
+                    states[(word << 6) + Long.numberOfTrailingZeros(bits)] = DEFAULT;
+                }
+                touched[word] = 0;
+            }
+            changes.addAll(board_height * board_width);
+        }
+
+        // Counts are left as they are when the next mines will be counted all at once.
+        for (int i = 0; i < num_placed; i++) {
+            if (count_all) {
+                mines[mine_list[i] >>> 6] &= ~(1L << mine_list[i]);
+            } else {
+                setMine(mine_list[i], false);
+            }
+        }
+
+        if (mines_shown) { // Mines were drawn when the game was lost, so they need redrawing now.
+            if (shown_mines == null) {
+                shown_mines = new int[num_mines];
+            }
+            System.arraycopy(mine_list, 0, shown_mines, 0, num_placed);
+            changes.add(shown_mines, num_placed);
+        }
+
+        num_placed = 0;
+        num_touched = 0;
+        num_flag_cells = 0;
+        if (opened.length > MAX_TOUCHED_LIST) {
+            opened = new int[LIST_START];
+        }
+
+        // Place mines in new places.
+        if (!safe_zone) {
+            armMines(-1);
+        }
+
+        changes.finish(0, num_revealed, flags_remaining, game_over, false, false);
+        changes.markReset();
+
+        if (Metrics.ENABLED) {
+            Metrics.RESET.record(System.nanoTime() - action_start);
+        }
+    }
+
+    // Rebuild everything that follows from the mines and cell states after they have been filled in directly (see
+    // GameFile): adjacent counts, the mine and touched lists and the counters.
+    void restore(long random_state, boolean armed, boolean game_over, int tripped, int proxy_tripped) {
+        this.rnd.setSeed(random_state);
+        this.armed = armed;
+        this.game_over = game_over;
+        this.tripped = tripped;
+        this.proxy_tripped = proxy_tripped;
+
+        // Mines, a word at a time.
+        Arrays.fill(touched, 0);
+        num_touched = 0;
+        num_flag_cells = 0;
+        num_placed = 0;
+        for (int word = 0; word < mines.length; word++) {
+            for (long bits = mines[word]; bits != 0; bits &= bits - 1) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (num_placed == num_mines || index >= board_height * board_width) {
+                    throw new IllegalArgumentException("More mines than the game has");
+                }
+                mine_list[num_placed++] = index;
+            }
+        }
+        if (armed && num_placed != num_mines) {
+            throw new IllegalArgumentException("Fewer mines than the game has");
+        }
+
+        countAdjacent();
+
+        // Cells that aren't in their default state (which is 0), skipping eight untouched cells at a time.
+        num_revealed = 0;
+        flags_remaining = num_mines;
+        for (int i = 0; i < states.length; i++) {
+            if ((i & 7) == 0 && i + 8 <= states.length && (long) BYTES_AS_LONG.get(states, i) == 0) {
+                i += 7;
+            } else if (states[i] != DEFAULT) {
+                touch(i);
+                if (states[i] == REVEALED) {
+                    num_revealed++;
+                } else if (states[i] == FLAGGED) {
+                    flags_remaining--;
+                }
+            }
+        }
+    }
+
+    // Adjacent counts for every cell from the mines.
+    private void countAdjacent() {
+        if (!(topology instanceof SquareTopology)) {
+            // Other shapes add each mine to its neighbours.
+            Arrays.fill(adjacent, (byte) 0);
+            for (int i = 0; i < num_placed; i++) {
+                int count = topology.neighbours(mine_list[i], neighbours);
+                for (int j = 0; j < count; j++) {
+                    adjacent[neighbours[j]]++;
+                }
+            }
+            return;
+        }
+
+        // Square boards a row at a time, 64 cells to a word (see MineCounter). Much quicker than adding each mine to
+        // its neighbours on a large board.
+        if (counter == null) {
+            counter = new MineCounter(board_height, board_width);
+        }
+        counter.count(mines, adjacent);
+    }
+
+    // A copy of the board and everything needed to carry on from it, for going back to later (see Journal).
+    static final class Snapshot {
+        private final long[] mines;
+        private final byte[] states;
+        private long seed, random_state;
+        private boolean armed, game_over;
+        private int tripped, proxy_tripped;
+
+        private Snapshot(int words, int cells) {
+            this.mines = new long[words];
+            this.states = new byte[cells];
+        }
+
+        // Memory a snapshot of a board of this many cells takes, roughly.
+        static long bytes(long cells) {
+            return 8 * ((cells + 63) >>> 6) + cells;
+        }
+    }
+
+    Snapshot snapshot() {
+        return snapshot(new Snapshot(mines.length, states.length));
+    }
+
+    // Copy the game into an existing snapshot of the same size.
+    Snapshot snapshot(Snapshot into) {
+        System.arraycopy(mines, 0, into.mines, 0, mines.length);
+        System.arraycopy(states, 0, into.states, 0, states.length);
+        into.seed = seed;
+        into.random_state = rnd.getState();
+        into.armed = armed;
+        into.game_over = game_over;
+        into.tripped = tripped;
+        into.proxy_tripped = proxy_tripped;
+        return into;
+    }
+
+    // Put the game back the way it was when a snapshot was taken, as a single action. The change set holds every cell
+    // that may look different: those whose state or mine differs, and while either side is a lost game (which shows
+    // the mines and wrong flags) every mine and every cell that isn't in its default state.
+    void restore(Snapshot snapshot) {
+        beginAction();
+
+        boolean lost = (game_over && tripped >= 0) || (snapshot.game_over && snapshot.tripped >= 0);
+        for (int i = 0; i < states.length; i++) {
+            if (!lost && (i & 7) == 0 && i + 8 <= states.length &&
+                    (long) BYTES_AS_LONG.get(states, i) == (long) BYTES_AS_LONG.get(snapshot.states, i) &&
+                    ((mines[i >>> 6] ^ snapshot.mines[i >>> 6]) >>> (i & 63) & 0xFF) == 0) {
+                i += 7;
+                continue;
+            }
+
+            boolean mine = isMine(i), was_mine = (snapshot.mines[i >>> 6] & (1L << i)) != 0;
+            if (states[i] != snapshot.states[i] || mine != was_mine ||
+                    (lost && (mine || was_mine || states[i] != DEFAULT || snapshot.states[i] != DEFAULT))) {
+                addOpened(i);
+            }
+        }
+
+        System.arraycopy(snapshot.mines, 0, mines, 0, mines.length);
+        System.arraycopy(snapshot.states, 0, states, 0, states.length);
+        this.seed = snapshot.seed;
+        restore(snapshot.random_state, snapshot.armed, snapshot.game_over, snapshot.tripped, snapshot.proxy_tripped);
+
+        changes.add(opened, num_opened);
+        changes.finish(0, num_revealed, flags_remaining, game_over, isWon(), false);
+        changes.markReset();
+    }
+
+    // The raw mine bitset, cell states and generator state, for GameFile.
+    long[] getMineBits() {
+        return mines;
+    }
+
+    byte[] getStateBytes() {
+        return states;
+    }
+
+    long getRandomState() {
+        return rnd.getState();
+    }
+
+    boolean isArmed() {
+        return armed;
+    }
+
+    // Getters and setters
+
+    // What the last action changed. Only valid until the next action.
+    public ChangeSet getChanges() {
+        return changes;
+    }
+
+    // Whether the last action changed the game at all, rather than being a click that had no effect.
+    public boolean hasChanged() {
+        return changed;
+    }
+
+    // Number of actions run so far, so callers can tell whether anything has happened since they last looked.
+    public long getActionCount() {
+        return action_count;
+    }
+
+    public State getState(int index) {
+        return STATES[states[index]];
+    }
+
+    public boolean isMine(int index) {
+        return (mines[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Set or clear a mine, keeping the adjacent mine counts of its neighbours up to date.
+    private void setMine(int index, boolean mine) {
+        if (mine == isMine(index)) {
+            return;
+        }
+
+        int change;
+        if (mine) {
+            mines[index >>> 6] |= 1L << index;
+            change = 1;
+        } else {
+            mines[index >>> 6] &= ~(1L << index);
+            change = -1;
+        }
+
+        int count = topology.neighbours(index, neighbours);
+        for (int i = 0; i < count; i++) {
+            adjacent[neighbours[i]] += change;
+        }
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    public int getHeight() {
+        return board_height;
+    }
+
+    public int getWidth() {
+        return board_width;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public boolean isSafeZone() {
+        return safe_zone;
+    }
+
+    public int getNumMines() {
+        return num_mines;
+    }
+
+    public int getNumRevealed() {
+        return num_revealed;
+    }
+
+    public int getFlagsRemaining() {
+        return flags_remaining;
+    }
+
+    public boolean isGameOver() {
+        return game_over;
+    }
+
+    public boolean isWon() {
+        return num_revealed == (board_height * board_width) - num_mines;
+    }
+
+    // Mine that ended the game (-1 if none).
+    public int getTripped() {
+        return tripped;
+    }
+
+    // Revealed cell that was chorded onto a mine (-1 if none).
+    public int getProxyTripped() {
+        return proxy_tripped;
+    }
+}
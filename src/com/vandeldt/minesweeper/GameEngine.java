@@ -0,0 +1,80 @@
+package com.vandeldt.minesweeper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Runs a Game on its own thread so the UI never waits on game logic. Commands are queued and run one at a time, so the
+// engine thread is the only thing that ever changes the game. After each command its changes are copied and handed to
+// the listener on the publish executor (the event dispatch thread for Swing). Views shouldn't read the game itself,
+// which may be halfway through a command; an observer can work out what they need and hand it over with publish(),
+// which runs ahead of the listener for the same command.
+public class GameEngine {
+
+    private final Game game;
+    private final ExecutorService executor;
+    private final Executor publisher;
+    private final Consumer<ChangeSet> listener;
+    private final List<Consumer<ChangeSet>> observers = new ArrayList<>();
+
+    // Constructor
+    public GameEngine(Game game, Executor publisher, Consumer<ChangeSet> listener) {
+        this.game = game;
+        this.publisher = publisher;
+        this.listener = listener;
+
+        // Single daemon thread working through a queue of commands.
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Queue a click on a cell.
+    public void update(int index, int button) {
+        submit(game -> game.update(index, button));
+    }
+
+    // Queue a reset of the game.
+    public void reset() {
+        submit(Game::reset);
+    }
+
+    // Queue any command against the game. If it ran an action, observers see the changes on the engine thread and
+    // then a copy is published. Only the last action's changes are seen, so commands should run one action each.
+    public void submit(Consumer<Game> command) {
+        executor.execute(() -> {
+            long actions = game.getActionCount();
+            command.accept(game);
+
+            if (game.getActionCount() != actions) {
+                for (Consumer<ChangeSet> observer : observers) {
+                    observer.accept(game.getChanges());
+                }
+
+                ChangeSet changes = game.getChanges().copy();
+                publisher.execute(() -> listener.accept(changes));
+            }
+        });
+    }
+
+    // Run something on the publish executor, e.g. to hand results from a command back to the UI.
+    public void publish(Runnable runnable) {
+        publisher.execute(runnable);
+    }
+
+    // Add something that follows every change on the engine thread, such as a solver. Observers added after the first
+    // command must be added from a command.
+    public void addObserver(Consumer<ChangeSet> observer) {
+        observers.add(observer);
+    }
+
+    // Stop taking commands once the queue is empty.
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
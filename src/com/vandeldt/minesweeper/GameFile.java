@@ -0,0 +1,206 @@
+package com.vandeldt.minesweeper;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+// Saves and loads games in a compact binary format: a fixed header followed by the mine bitset and two bits of state
+// per cell, so a board takes about a third of a byte per cell. Large files go through a direct buffer filled with bulk
+// copies and word-at-a-time packing, never one object per cell. Files are never memory-mapped: a live mapping stops
+// the saved file being replaced on some systems, and can't be released on demand.
+//
+// Layout (little-endian):
+//    0  int   magic "MSWP"
+//    4  int   version
+//    8  int   flags: 1 safe zone, 2 mines placed, 4 game over
+//   12  int   height, width, mines (3 ints)
+//   24  long  seed
+//   32  long  random generator state
+//   40  int   cells revealed, flags remaining, tripped mine, proxy tripped cell (4 ints)
+//   56  int   reserved (0)
+//   60  int   CRC-32 of the rest of the file (bytes 0 to 59 and everything after the header)
+//   64        mine bitset, one long per 64 cells
+//             cell states (State ordinals), 8 cells per short
+public final class GameFile {
+
+    // Where the game in progress is kept between sessions.
+    public static final Path AUTO_SAVE = Paths.get(System.getProperty("user.home"), ".minesweeper", "autosave.msw");
+
+    private static final int MAGIC = 0x5057534D; // "MSWP" in little-endian order
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int CRC_OFFSET = 60;
+
+    private static final int SAFE_ZONE = 1, ARMED = 2, GAME_OVER = 4;
+
+    // Files bigger than this are read and written through a direct buffer rather than a heap array, which the channel
+    // would otherwise copy into a temporary direct buffer of the same size.
+    private static final long DIRECT_THRESHOLD = 1 << 20;
+
+    // Eight cell states at a time, as a long.
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private GameFile() {}
+
+    // Write a game to a file. It goes to a temporary file first and is then moved into place, so a failed save never
+    // leaves a broken file behind.
+    public static void save(Game game, Path path) throws IOException {
+        int cells = game.getHeight() * game.getWidth();
+        long[] mines = game.getMineBits();
+        long size = HEADER + 8L * mines.length + 2L * ((cells + 7) >>> 3);
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            ByteBuffer buffer = size > DIRECT_THRESHOLD ? ByteBuffer.allocateDirect((int) size)
+                    : ByteBuffer.allocate((int) size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            int flags = (game.isSafeZone() ? SAFE_ZONE : 0) | (game.isArmed() ? ARMED : 0) |
+                    (game.isGameOver() ? GAME_OVER : 0);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(flags)
+                    .putInt(game.getHeight()).putInt(game.getWidth()).putInt(game.getNumMines())
+                    .putLong(game.getSeed()).putLong(game.getRandomState())
+                    .putInt(game.getNumRevealed()).putInt(game.getFlagsRemaining())
+                    .putInt(game.getTripped()).putInt(game.getProxyTripped())
+                    .putInt(0);
+
+            buffer.position(HEADER);
+            buffer.asLongBuffer().put(mines);
+            packStates(game.getStateBytes(), cells, buffer, HEADER + 8 * mines.length);
+
+            buffer.putInt(CRC_OFFSET, checksum(buffer));
+
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // Make sure the new file is on disk before it replaces the old one.
+            channel.force(true);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Read a game back from a file, checking it is intact.
+    public static Game load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            long size = channel.size();
+            if (size < HEADER) {
+                throw new IOException("Not a saved game: too short");
+            }
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt save: wrong length");
+            }
+            ByteBuffer buffer = size > DIRECT_THRESHOLD ? ByteBuffer.allocateDirect((int) size)
+                    : ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0);
+            buffer.flip();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a saved game");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported save version " + buffer.getInt(4));
+            }
+
+            int flags = buffer.getInt(8);
+            int height = buffer.getInt(12), width = buffer.getInt(16), mines = buffer.getInt(20);
+            if (height <= 0 || width <= 0 || (long) height * width > Integer.MAX_VALUE || mines <= 0 ||
+                    mines >= (long) height * width) {
+                throw new IOException("Corrupt save: bad dimensions");
+            }
+
+            int cells = height * width;
+            int words = (cells + 63) >>> 6;
+            if (size != HEADER + 8L * words + 2L * ((cells + 7) >>> 3)) {
+                throw new IOException("Corrupt save: wrong length");
+            }
+            if (buffer.getInt(CRC_OFFSET) != checksum(buffer)) {
+                throw new IOException("Corrupt save: checksum mismatch");
+            }
+
+            Game game = new Game(height, width, mines, buffer.getLong(24), (flags & SAFE_ZONE) != 0, false);
+            buffer.position(HEADER);
+            buffer.asLongBuffer().get(game.getMineBits());
+            unpackStates(buffer, HEADER + 8 * words, game.getStateBytes(), cells);
+
+            try {
+                game.restore(buffer.getLong(32), (flags & ARMED) != 0, (flags & GAME_OVER) != 0,
+                        buffer.getInt(48), buffer.getInt(52));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt save: " + e.getMessage(), e);
+            }
+
+            // The counters are saved as a cross-check against what the cells say.
+            if (game.getNumRevealed() != buffer.getInt(40) || game.getFlagsRemaining() != buffer.getInt(44)) {
+                throw new IOException("Corrupt save: counters don't match the board");
+            }
+
+            return game;
+        }
+    }
+
+    // CRC-32 of the whole buffer apart from the checksum itself.
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(CRC_OFFSET));
+        crc.update(buffer.duplicate().position(HEADER).limit(buffer.capacity()));
+        return (int) crc.getValue();
+    }
+
+    // Squeeze the two meaningful bits of each state byte together, 8 cells (one long) into a short: each step halves
+    // the number of groups by moving every other group down next to its neighbour.
+    private static void packStates(byte[] states, int cells, ByteBuffer buffer, int offset) {
+        int i = 0;
+        for (; i + 8 <= cells; i += 8) {
+            long x = (long) LONGS.get(states, i);
+            x = (x | (x >>> 6)) & 0x000F000F000F000FL;
+            x = (x | (x >>> 12)) & 0x000000FF000000FFL;
+            x = (x | (x >>> 24)) & 0xFFFFL;
+            buffer.putShort(offset + (i >>> 2), (short) x);
+        }
+
+        if (i < cells) {
+            int x = 0;
+            for (int j = i; j < cells; j++) {
+                x |= states[j] << (2 * (j - i));
+            }
+            buffer.putShort(offset + (i >>> 2), (short) x);
+        }
+    }
+
+    // The reverse of packStates.
+    private static void unpackStates(ByteBuffer buffer, int offset, byte[] states, int cells) {
+        int i = 0;
+        for (; i + 8 <= cells; i += 8) {
+            long x = buffer.getShort(offset + (i >>> 2)) & 0xFFFFL;
+            x = (x | (x << 24)) & 0x000000FF000000FFL;
+            x = (x | (x << 12)) & 0x000F000F000F000FL;
+            x = (x | (x << 6)) & 0x0303030303030303L;
+            LONGS.set(states, i, x);
+        }
+
+        if (i < cells) {
+            int x = buffer.getShort(offset + (i >>> 2));
+            for (int j = i; j < cells; j++) {
+                states[j] = (byte) ((x >>> (2 * (j - i))) & 3);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.vandeldt.minesweeper;
+
+// A board of hexagons, pointy side up, in rows where every odd row is pushed half a cell to the right. Each cell
+// touches six others: two beside it and two in each of the rows above and below, which are the cells at the same
+// column and the one before it on even rows, or after it on odd rows.
+public final class HexTopology implements Topology {
+
+    private final int board_height, board_width;
+
+    public HexTopology(int height, int width) {
+        this.board_height = height;
+        this.board_width = width;
+    }
+
+    @Override
+    public int neighbours(int index, int[] into) {
+        int row = index / board_width, col = index % board_width;
+
+        // Columns of the two neighbours in the rows above and below.
+        int first = (row & 1) == 0 ? col - 1 : col, second = first + 1;
+        int count = 0;
+
+        if (row > 0) {
+            count = addRow(index - board_width - col, first, second, into, count);
+        }
+        if (col > 0) {
+            into[count++] = index - 1;
+        }
+        if (col < board_width - 1) {
+            into[count++] = index + 1;
+        }
+        if (row < board_height - 1) {
+            count = addRow(index + board_width - col, first, second, into, count);
+        }
+
+        return count;
+    }
+
+    // Add the cells at two columns of the row starting at start, if they're on the board.
+    private int addRow(int start, int first, int second, int[] into, int count) {
+        if (first >= 0) {
+            into[count++] = start + first;
+        }
+        if (second < board_width) {
+            into[count++] = start + second;
+        }
+        return count;
+    }
+
+    @Override
+    public int getMaxNeighbours() {
+        return 6;
+    }
+
+    @Override
+    public int getHeight() {
+        return board_height;
+    }
+
+    @Override
+    public int getWidth() {
+        return board_width;
+    }
+
+    @Override
+    public String getName() {
+        return "hex";
+    }
+}
@@ -0,0 +1,254 @@
+package com.vandeldt.minesweeper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Every move of the current game in order, one long each, so the game can be replayed exactly from its seed, undone
+// and redone. Going back or forward replays moves on a spare game from the nearest earlier snapshot, then puts the
+// real game into that state as a single action, so seeking costs at most one snapshot interval of moves however long
+// the game is. Snapshots are taken every interval moves; when they take up too much memory every other one is dropped
+// and the interval doubles. On boards so big that a single snapshot is over the budget none are taken, and seeking
+// replays from the start.
+//
+// A journal belongs to whoever runs the game (the engine thread), and moves are also streamed to a JournalFile if
+// one is set.
+public class Journal {
+
+    // Moves between snapshots to begin with, and the most memory snapshots may take before they are thinned out.
+    private static final int FIRST_INTERVAL = 64;
+    private static final long MAX_SNAPSHOT_BYTES = 64L << 20;
+
+    // A move as a long: milliseconds since the game started above bit 32, then the button (set for a right click) and
+    // the cell index.
+    private static final long RIGHT_BUTTON = 1L << 31;
+    private static final long MAX_TIME = (1L << 30) - 1;
+
+    private final int height, width, mines;
+    private final boolean safe_zone;
+
+    // Memory one snapshot of the board takes.
+    private final long snapshot_bytes;
+
+    private long seed, start_time;
+    private boolean from_seed = true;
+    private long[] moves = new long[256];
+    private int size = 0, position = 0;
+
+    // snapshots.get(k) is the game after k * interval moves. The first is null when the game starts from its seed,
+    // or the board it carried on from (e.g. one loaded from a file).
+    private final List<Game.Snapshot> snapshots = new ArrayList<>();
+    private int interval = FIRST_INTERVAL;
+
+    // Spare game to replay on and a snapshot to copy it over with. Together they take more memory than the game
+    // itself, so they are only made when a seek has moves to replay, and dropped when a new game starts.
+    private Game spare;
+    private Game.Snapshot transfer;
+
+    private JournalFile file;
+
+    // Constructor
+    public Journal(int height, int width, int mines, boolean safe_zone) {
+        this.height = height;
+        this.width = width;
+        this.mines = mines;
+        this.safe_zone = safe_zone;
+        this.snapshot_bytes = Game.Snapshot.bytes((long) height * width);
+        snapshots.add(null);
+    }
+
+    // Start again with a new game on the board given by seed.
+    public void start(long seed, long time) {
+        clear(seed, time, null, true);
+        if (file != null) {
+            file.start(seed, time, false);
+        }
+    }
+
+    // Start again from a game already under way, which can't be replayed from its seed.
+    public void resume(Game game, long time) {
+        clear(game.getSeed(), time, game.snapshot(), false);
+        if (file != null) {
+            file.start(seed, time, true);
+        }
+    }
+
+    // Forget the last game. A game read back from a file that didn't start from its seed has no base to replay from.
+    void clear(long seed, long time, Game.Snapshot base, boolean from_seed) {
+        this.seed = seed;
+        this.from_seed = from_seed;
+        this.start_time = time;
+        size = 0;
+        position = 0;
+        interval = FIRST_INTERVAL;
+        snapshots.clear();
+        snapshots.add(base);
+        spare = null;
+        transfer = null;
+    }
+
+    // Record a move just made on the game. Anything that could have been redone is forgotten.
+    public void record(Game game, int index, int button, long time) {
+        add(encode(index, button, time - start_time));
+
+        if (position % interval == 0 && position / interval == snapshots.size() &&
+                snapshot_bytes <= MAX_SNAPSHOT_BYTES) {
+            snapshots.add(game.snapshot());
+            thin();
+        }
+
+        if (file != null) {
+            file.move(moves[size - 1]);
+        }
+    }
+
+    // Add an encoded move at the current position.
+    void add(long move) {
+        if (position < size) {
+            size = position;
+            while ((snapshots.size() - 1) * interval > position) {
+                snapshots.remove(snapshots.size() - 1);
+            }
+        }
+
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+        position = size;
+    }
+
+    // Move the position without touching any game, for a journal read back from a file.
+    void setPosition(int position) {
+        this.position = position;
+    }
+
+    // Drop every other snapshot while they take up too much memory.
+    private void thin() {
+        while (snapshots.size() > 2 && (snapshots.size() - 1) * snapshot_bytes > MAX_SNAPSHOT_BYTES) {
+            for (int k = 1; k < snapshots.size(); k++) {
+                snapshots.remove(k);
+            }
+            interval *= 2;
+        }
+    }
+
+    // Take back the last move. Returns false if there is nothing to undo.
+    public boolean undo(Game game) {
+        return seek(game, position - 1);
+    }
+
+    // Make the last undone move again. Returns false if there is nothing to redo.
+    public boolean redo(Game game) {
+        return seek(game, position + 1);
+    }
+
+    // Put the game in the state it was in after the given number of moves, as a single action. Returns false if that
+    // is out of range.
+    public boolean seek(Game game, int target) {
+        if (target < 0 || target > size) {
+            return false;
+        }
+        if (target == position) {
+            return true;
+        }
+
+        int k = Math.min(target / interval, snapshots.size() - 1);
+        if (target == position + 1) {
+            play(game, moves[position]);
+        } else if (k * interval == target && snapshots.get(k) != null) {
+            // Straight back to a snapshot, with nothing to replay.
+            game.restore(snapshots.get(k));
+        } else {
+            if (spare == null) {
+                spare = new Game(height, width, mines, seed, safe_zone, false);
+                transfer = spare.snapshot();
+            }
+            rebuild(spare, target);
+            game.restore(spare.snapshot(transfer));
+        }
+
+        position = target;
+        if (file != null) {
+            file.seek(target);
+        }
+        return true;
+    }
+
+    // A new game in the state after the given number of moves.
+    public Game replay(int target) {
+        if (target < 0 || target > size) {
+            throw new IndexOutOfBoundsException(target);
+        }
+
+        Game game = new Game(height, width, mines, seed, safe_zone, false);
+        rebuild(game, target);
+        return game;
+    }
+
+    // Set a game to the nearest snapshot at or before target and play the moves from there.
+    private void rebuild(Game game, int target) {
+        int k = Math.min(target / interval, snapshots.size() - 1);
+        if (snapshots.get(k) != null) {
+            game.restore(snapshots.get(k));
+        } else if (from_seed) {
+            game.reset(seed);
+        } else {
+            throw new IllegalStateException("The board this game carried on from wasn't recorded");
+        }
+
+        for (int i = k * interval; i < target; i++) {
+            play(game, moves[i]);
+        }
+    }
+
+    private static void play(Game game, long move) {
+        game.update((int) (move & (RIGHT_BUTTON - 1)), (move & RIGHT_BUTTON) != 0 ? Game.RIGHT_CLICK : Game.LEFT_CLICK);
+    }
+
+    static long encode(int index, int button, long time) {
+        return Math.min(Math.max(time, 0), MAX_TIME) << 32 | (button == Game.RIGHT_CLICK ? RIGHT_BUTTON : 0) | index;
+    }
+
+    // Getters and setters
+
+    public void setFile(JournalFile file) {
+        this.file = file;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getStartTime() {
+        return start_time;
+    }
+
+    // Moves recorded, including any that have been undone.
+    public int size() {
+        return size;
+    }
+
+    // Moves currently played.
+    public int getPosition() {
+        return position;
+    }
+
+    public int getIndex(int move) {
+        return (int) (moves[move] & (RIGHT_BUTTON - 1));
+    }
+
+    public int getButton(int move) {
+        return (moves[move] & RIGHT_BUTTON) != 0 ? Game.RIGHT_CLICK : Game.LEFT_CLICK;
+    }
+
+    // Milliseconds after the start of the game.
+    public long getTime(int move) {
+        return moves[move] >>> 32;
+    }
+
+    // Whether the game started from its seed, rather than carrying on from another board.
+    public boolean isFromSeed() {
+        return from_seed;
+    }
+}
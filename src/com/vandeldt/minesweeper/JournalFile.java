@@ -0,0 +1,240 @@
+package com.vandeldt.minesweeper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+// Append-only file of every game played in a session and its moves, as recorded by a Journal. Recording only puts a
+// long into a buffer; a background thread writes the buffer out in batches, every second or as soon as it holds a
+// batch, so a click never waits on the disk. If the disk falls behind the buffer grows instead.
+//
+// Layout (little-endian):
+//    0  int   magic "MSWJ"
+//    4  int   version
+//    8  int   height, width, mines (3 ints)
+//   20  int   flags: 1 safe zone
+//   24  long  reserved (0)
+//   32        records, one long each, told apart by their top two bits:
+//             0  a move, as encoded by Journal
+//             1  going back or forward to the move number in the low 31 bits
+//             2  a new game, followed by its seed and start time (two longs); bit 0 is set if the game carried on from
+//                a board that wasn't recorded
+//
+// java -cp out/production/Minesweeper com.vandeldt.minesweeper.JournalFile [journal.msj]
+public final class JournalFile {
+
+    // Where journals are kept, and how many sessions' worth are kept there.
+    public static final Path DIRECTORY = Paths.get(System.getProperty("user.home"), ".minesweeper", "journals");
+    private static final int KEEP = 20;
+
+    private static final int MAGIC = 0x4A57534D; // "MSWJ" in little-endian order
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private static final int SAFE_ZONE = 1;
+
+    private static final long MOVE = 0, SEEK = 1L << 62, GAME = 2L << 62, TAG = 3L << 62;
+    private static final long RESUMED = 1;
+
+    // Bytes written in one go, and the longest moves wait in the buffer.
+    private static final int BATCH = 1 << 16;
+    private static final long FLUSH_MILLIS = 1000;
+
+    private final FileChannel channel;
+    private final ScheduledExecutorService writer;
+
+    // Records are added to filling (under its lock) while the writer thread empties draining.
+    private ByteBuffer filling = ByteBuffer.allocate(BATCH).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer draining = ByteBuffer.allocate(BATCH).order(ByteOrder.LITTLE_ENDIAN);
+    private boolean drain_queued = false;
+    private volatile boolean failed = false;
+
+    // Constructor
+    public JournalFile(Path path, int height, int width, int mines, boolean safe_zone) throws IOException {
+        this.channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(height).putInt(width).putInt(mines)
+                .putInt(safe_zone ? SAFE_ZONE : 0).putLong(0).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.scheduleWithFixedDelay(this::drain, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // A new journal in DIRECTORY named after the time, clearing out all but the most recent older ones.
+    public static JournalFile create(int height, int width, int mines, boolean safe_zone) throws IOException {
+        Files.createDirectories(DIRECTORY);
+
+        List<Path> old = list();
+        for (int i = 0; i <= old.size() - KEEP; i++) {
+            Files.deleteIfExists(old.get(i));
+        }
+
+        String name = "journal-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS"));
+        return new JournalFile(DIRECTORY.resolve(name + ".msj"), height, width, mines, safe_zone);
+    }
+
+    // Journals in DIRECTORY, oldest first.
+    public static List<Path> list() throws IOException {
+        if (!Files.isDirectory(DIRECTORY)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(DIRECTORY)) {
+            return files.filter(path -> path.toString().endsWith(".msj")).sorted().toList();
+        }
+    }
+
+    // Records, from the journal's thread.
+
+    synchronized void start(long seed, long time, boolean resumed) {
+        put(GAME | (resumed ? RESUMED : 0));
+        put(seed);
+        put(time);
+    }
+
+    void move(long move) {
+        put(MOVE | move);
+    }
+
+    void seek(int position) {
+        put(SEEK | position);
+    }
+
+    private synchronized void put(long record) {
+        if (!filling.hasRemaining()) {
+            ByteBuffer bigger = ByteBuffer.allocate(filling.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            filling = bigger.put(filling.flip());
+        }
+        filling.putLong(record);
+
+        if (filling.position() >= BATCH && !drain_queued && !failed) {
+            drain_queued = true;
+            writer.execute(this::drain);
+        }
+    }
+
+    // Write out whatever has been recorded (writer thread only).
+    private void drain() {
+        synchronized (this) {
+            ByteBuffer full = filling;
+            filling = draining;
+            draining = full;
+            drain_queued = false;
+        }
+
+        draining.flip();
+        try {
+            while (draining.hasRemaining() && !failed) {
+                channel.write(draining);
+            }
+        } catch (IOException e) {
+            failed = true;
+            System.err.println("Journal not saved: " + e.getMessage());
+        }
+        draining.clear();
+    }
+
+    // Write out everything recorded so far and close the file.
+    public void close() throws IOException {
+        writer.execute(this::drain);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    // Read every game back from a journal. A file cut short part way through a record is read up to that record.
+    public static List<Journal> read(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a journal");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported journal version " + buffer.getInt(4));
+        }
+
+        int height = buffer.getInt(8), width = buffer.getInt(12), mines = buffer.getInt(16);
+        boolean safe_zone = (buffer.getInt(20) & SAFE_ZONE) != 0;
+
+        List<Journal> journals = new ArrayList<>();
+        Journal journal = null;
+        buffer.position(HEADER);
+        while (buffer.remaining() >= 8) {
+            long record = buffer.getLong();
+
+            if ((record & TAG) == GAME) {
+                if (buffer.remaining() < 16) {
+                    break;
+                }
+                journal = new Journal(height, width, mines, safe_zone);
+                journal.clear(buffer.getLong(), buffer.getLong(), null, (record & RESUMED) == 0);
+                journals.add(journal);
+            } else if (journal == null) {
+                throw new IOException("Corrupt journal: moves before the first game");
+            } else if ((record & TAG) == SEEK && (int) (record & ~TAG) <= journal.size()) {
+                journal.setPosition((int) (record & ~TAG));
+            } else if ((record & TAG) == MOVE) {
+                journal.add(record);
+            } else {
+                throw new IOException("Corrupt journal: bad record at byte " + (buffer.position() - 8));
+            }
+        }
+
+        return journals;
+    }
+
+    // Print every game in a journal (the latest one if none is given), replaying each to check how it ended.
+    public static void main(String[] args) throws IOException {
+        Path path;
+        if (args.length > 0) {
+            path = Paths.get(args[0]);
+        } else {
+            List<Path> journals = list();
+            if (journals.isEmpty()) {
+                System.err.println("No journals in " + DIRECTORY);
+                System.exit(1);
+                return;
+            }
+            path = journals.get(journals.size() - 1);
+        }
+
+        List<Journal> games = read(path);
+        System.out.println(path + ": " + games.size() + " games");
+        for (int i = 0; i < games.size(); i++) {
+            Journal journal = games.get(i);
+            System.out.printf("game %d: seed %d, %d moves, at move %d", i + 1, journal.getSeed(), journal.size(),
+                    journal.getPosition());
+            if (journal.isFromSeed()) {
+                Game game = journal.replay(journal.getPosition());
+                System.out.printf(", %s with %d revealed", game.isGameOver() ? (game.isWon() ? "won" : "lost")
+                        : "in progress", game.getNumRevealed());
+            } else {
+                System.out.print(", carried on from a saved game");
+            }
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.vandeldt.minesweeper;
+
+// A 3D board: layers of square grids stacked on each other, where every cell touches the 26 around it in the cube
+// (fewer on the faces). For Game the layers are laid out one after another down the rows, so a board of L layers of
+// R x C cells is an (L * R) x C grid, and a cell's neighbours in the layers either side are R rows away.
+public final class LayeredTopology implements Topology {
+
+    private final int layers, layer_height, board_width;
+
+    public LayeredTopology(int layers, int height, int width) {
+        this.layers = layers;
+        this.layer_height = height;
+        this.board_width = width;
+    }
+
+    @Override
+    public int neighbours(int index, int[] into) {
+        int layer_size = layer_height * board_width;
+        int layer = index / layer_size, row = index % layer_size / board_width, col = index % board_width;
+        int count = 0;
+
+        for (int d_layer = -1; d_layer <= 1; d_layer++) {
+            int l = layer + d_layer;
+            if (l < 0 || l >= layers) {
+                continue;
+            }
+
+            for (int d_row = -1; d_row <= 1; d_row++) {
+                int r = row + d_row;
+                if (r < 0 || r >= layer_height) {
+                    continue;
+                }
+
+                for (int d_col = -1; d_col <= 1; d_col++) {
+                    int c = col + d_col;
+                    if ((d_layer != 0 || d_row != 0 || d_col != 0) && c >= 0 && c < board_width) {
+                        into[count++] = index + d_layer * layer_size + d_row * board_width + d_col;
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public int getMaxNeighbours() {
+        return 26;
+    }
+
+    @Override
+    public int getHeight() {
+        return layers * layer_height;
+    }
+
+    @Override
+    public int getWidth() {
+        return board_width;
+    }
+
+    @Override
+    public String getName() {
+        return "3d:" + layers;
+    }
+
+    public int getLayers() {
+        return layers;
+    }
+}
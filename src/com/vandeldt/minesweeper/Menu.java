@@ -1,9 +1,13 @@
 package com.vandeldt.minesweeper;
 
+import com.vandeldt.minesweeper.solver.NoGuessGenerator;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
 
 import static java.awt.GridBagConstraints.BOTH;
@@ -11,10 +15,11 @@ import static java.awt.GridBagConstraints.BOTH;
 public class Menu extends JFrame {
 
     private final JTextField txt_height, txt_width, txt_mines;
+    private final JCheckBox chk_no_guess, chk_endless;
     private final Menu instance;
 
     // Set difficulties: Arrays are {Height, Width, Mines}.
-    private static final Map<String, Integer[]> DIFFICULTIES = new HashMap<>() {{
+    public static final Map<String, Integer[]> DIFFICULTIES = new HashMap<>() {{
         put("E", new Integer[]{8, 8, 10});
         put("M", new Integer[]{16, 16, 40});
         put("H", new Integer[]{16, 30, 99});
@@ -23,7 +28,7 @@ public class Menu extends JFrame {
     public Menu() {
 
         super("Minesweeper");
-        this.setIconImage( Cell.ICON_MINE.getImage() );
+        Cell.setWindowIcon(this);
         this.setSize(new Dimension(500, 500));
 
         this.setLayout(new GridBagLayout());
@@ -35,8 +40,8 @@ public class Menu extends JFrame {
 
         // Create panel to contain options
         JPanel pnlOptions = new JPanel();
-        pnlOptions.setLayout(new GridLayout(4, 1));
-        pnlOptions.setPreferredSize(new Dimension(100, 100));
+        pnlOptions.setLayout(new GridLayout(6, 1));
+        pnlOptions.setPreferredSize(new Dimension(120, 150));
 
         // Create action listener for radio buttons
         ActionListener difficultyChanged = new ActionListener() {
@@ -94,6 +99,14 @@ public class Menu extends JFrame {
         pnlOptions.add(btn_hard);
         pnlOptions.add(btn_cust);
 
+        // Option for boards that can always be solved without guessing.
+        chk_no_guess = new JCheckBox("No guessing");
+        pnlOptions.add(chk_no_guess);
+
+        // Option for a board with no edges, as thick with mines as the chosen difficulty.
+        chk_endless = new JCheckBox("Endless");
+        pnlOptions.add(chk_endless);
+
         // Add panel to frame
         constraints.gridx = 1;
         constraints.gridy = 1;
@@ -169,8 +182,16 @@ public class Menu extends JFrame {
                 } else if (mines <= 0 || mines >= height * width) { // Check valid num mines.
                         JOptionPane.showMessageDialog(instance, "Invalid number of mines (min: 1, max: " +
                                 (height * width - 1) + ").", "Error", JOptionPane.ERROR_MESSAGE);
+                } else if (chk_endless.isSelected()) { // Endless boards only take the density.
+                    new EndlessMinesweeper((double) mines / (height * width));
+                    instance.dispose();
+                } else if (chk_no_guess.isSelected() && !NoGuessGenerator.canGenerate(height, width, mines)) {
+                    JOptionPane.showMessageDialog(instance, "Boards without guessing can have at most " +
+                            NoGuessGenerator.MAX_CELLS + " cells, and at most " +
+                            Math.round(NoGuessGenerator.MAX_DENSITY * 100) + "% of them mines.", "Error",
+                            JOptionPane.ERROR_MESSAGE);
                 } else { // If all is well, start game.
-                    new Minesweeper(height, width, mines);
+                    new Minesweeper(height, width, mines, chk_no_guess.isSelected());
                     instance.dispose();
                 }
             } catch(Exception execpt) {
@@ -180,14 +201,32 @@ public class Menu extends JFrame {
 
         });
 
+        // Carry on with the game that was open when the window was last closed.
+        constraints.gridy = 3;
+        JButton btn_resume = new JButton("Resume Saved Game");
+        btn_resume.setEnabled(Files.exists(GameFile.AUTO_SAVE));
+        this.add(btn_resume, constraints);
+
+        btn_resume.addActionListener(e -> {
+            try {
+                new Minesweeper(GameFile.load(GameFile.AUTO_SAVE));
+                instance.dispose();
+            } catch (IOException except) {
+                JOptionPane.showMessageDialog(instance, "Couldn't load the saved game: " + except.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                btn_resume.setEnabled(false);
+            }
+        });
+
         this.setDefaultCloseOperation(EXIT_ON_CLOSE);
         this.pack();
         this.setVisible(true);
 
     }
 
+    // Build the menu on the event dispatch thread, where Swing expects it.
     public static void main(String[] args) {
-        new Menu();
+        SwingUtilities.invokeLater(Menu::new);
     }
 
 }
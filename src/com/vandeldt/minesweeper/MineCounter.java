@@ -0,0 +1,176 @@
+package com.vandeldt.minesweeper;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Adjacent mine counts for every cell of a square board at once, from its mine bits (one per cell at row * width + col,
+// as Game keeps them). Each row is cut out of the bits as its own plane of 64-cell words, and for every word the eight
+// neighbour planes (the rows above and below, and all three rows shifted a cell either way) are added together
+// bit-sliced: four count planes hold bits 0 to 3 of all 64 counts, so a few dozen word operations count 64 cells. Only
+// then are the counts spread out to a byte per cell. Large boards are counted in bands of rows on the common fork-join
+// pool, each band writing only its own rows. A counter is made once per board size so counting on the calling thread
+// doesn't allocate.
+public final class MineCounter {
+
+    // Boards of more cells than this are split into bands of about this many, counted in parallel.
+    static final int BAND = 1 << 18;
+
+    // Eight counts at a time, as a long.
+    private static final VarHandle BYTES_AS_LONG =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // The low 8 bits of a count plane, one to a byte.
+    private static final long[] SPREAD = new long[256];
+
+    static {
+        for (int bits = 0; bits < 256; bits++) {
+            for (int i = 0; i < 8; i++) {
+                SPREAD[bits] |= (long) (bits >>> i & 1) << (i << 3);
+            }
+        }
+    }
+
+    private final int board_height, board_width;
+
+    // Mines of the rows around the one being counted on the calling thread.
+    private final long[] above, level, below;
+
+    public MineCounter(int height, int width) {
+        this.board_height = height;
+        this.board_width = width;
+
+        int words = (width + 63) >>> 6;
+        this.above = new long[words + 1];
+        this.level = new long[words + 1];
+        this.below = new long[words + 1];
+    }
+
+    // Counts for every cell of the board.
+    public void count(long[] mines, byte[] adjacent) {
+        if ((long) board_height * board_width <= BAND) {
+            countRows(mines, adjacent, 0, board_height);
+        } else {
+            ForkJoinPool.commonPool().invoke(new BandTask(mines, board_height, board_width, adjacent, 0, board_height));
+        }
+    }
+
+    // Counts for the rows from first up to last only, on this thread.
+    public void countRows(long[] mines, byte[] adjacent, int first, int last) {
+        countRows(mines, board_height, board_width, adjacent, first, last, above, level, below);
+    }
+
+    private static void countRows(long[] mines, int height, int width, byte[] adjacent, int first, int last,
+                                  long[] above, long[] level, long[] below) {
+        rowBits(mines, height, width, first - 1, above);
+        rowBits(mines, height, width, first, level);
+
+        for (int row = first; row < last; row++) {
+            rowBits(mines, height, width, row + 1, below);
+            countRow(width, adjacent, row * width, above, level, below);
+
+            long[] spare = above;
+            above = level;
+            level = below;
+            below = spare;
+        }
+    }
+
+    // The mines of a row, starting at bit 0 of the first word (all zero for rows off the board). The last word is
+    // left zero so countRow can read one past the end.
+    private static void rowBits(long[] mines, int height, int width, int row, long[] bits) {
+        Arrays.fill(bits, 0);
+        if (row < 0 || row >= height) {
+            return;
+        }
+
+        long start = (long) row * width;
+        for (int word = 0; word << 6 < width; word++) {
+            long offset = start + ((long) word << 6);
+            int at = (int) (offset >>> 6), shift = (int) (offset & 63);
+            long value = mines[at] >>> shift;
+            if (shift != 0 && at + 1 < mines.length) {
+                value |= mines[at + 1] << (64 - shift);
+            }
+
+            int remaining = width - (word << 6);
+            bits[word] = remaining < 64 ? value & ((1L << remaining) - 1) : value;
+        }
+    }
+
+    // Counts for the row starting at start, given the mines in it and the rows either side.
+    private static void countRow(int width, byte[] adjacent, int start, long[] above, long[] level, long[] below) {
+        for (int word = 0; word << 6 < width; word++) {
+            // Neighbours either side are the row shifted by one, with a bit carried in from the word before or after.
+            long a = above[word], l = level[word], b = below[word];
+            long a_left = a << 1 | (word > 0 ? above[word - 1] >>> 63 : 0), a_right = a >>> 1 | above[word + 1] << 63;
+            long l_left = l << 1 | (word > 0 ? level[word - 1] >>> 63 : 0), l_right = l >>> 1 | level[word + 1] << 63;
+            long b_left = b << 1 | (word > 0 ? below[word - 1] >>> 63 : 0), b_right = b >>> 1 | below[word + 1] << 63;
+
+            // Add the eight up through full adders: ones from each row, then the twos they carry, then the fours.
+            long ones_above = a ^ a_left ^ a_right, twos_above = (a & a_left) | (a_right & (a ^ a_left));
+            long ones_below = b ^ b_left ^ b_right, twos_below = (b & b_left) | (b_right & (b ^ b_left));
+            long ones_level = l_left ^ l_right, twos_level = l_left & l_right;
+
+            long p0 = ones_above ^ ones_below ^ ones_level;
+            long twos = (ones_above & ones_below) | (ones_level & (ones_above ^ ones_below));
+
+            long sum = twos_above ^ twos_below ^ twos_level;
+            long fours = (twos_above & twos_below) | (twos_level & (twos_above ^ twos_below));
+            long p1 = sum ^ twos, more_fours = sum & twos;
+            long p2 = fours ^ more_fours, p3 = fours & more_fours;
+
+            int first = start + (word << 6), n = width - (word << 6);
+            if (n >= 64) {
+                for (int shift = 0; shift < 64; shift += 8) {
+                    BYTES_AS_LONG.set(adjacent, first + shift, spread(p0, p1, p2, p3, shift));
+                }
+            } else {
+                // The last few cells of the row, a byte at a time.
+                for (int i = 0; i < n; i++) {
+                    adjacent[first + i] = (byte) (spread(p0, p1, p2, p3, i & ~7) >>> ((i & 7) << 3));
+                }
+            }
+        }
+    }
+
+    // Eight counts from bit shift on of the count planes, one to a byte.
+    private static long spread(long p0, long p1, long p2, long p3, int shift) {
+        return SPREAD[(int) (p0 >>> shift) & 0xFF] | SPREAD[(int) (p1 >>> shift) & 0xFF] << 1 |
+                SPREAD[(int) (p2 >>> shift) & 0xFF] << 2 | SPREAD[(int) (p3 >>> shift) & 0xFF] << 3;
+    }
+
+    // A band of rows, split in half until it is no more than BAND cells.
+    private static final class BandTask extends RecursiveAction {
+        private final long[] mines;
+        private final int height, width;
+        private final byte[] adjacent;
+        private final int first, last;
+
+        BandTask(long[] mines, int height, int width, byte[] adjacent, int first, int last) {
+            this.mines = mines;
+            this.height = height;
+            this.width = width;
+            this.adjacent = adjacent;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) (last - first) * width <= BAND || last - first == 1) {
+                int words = (width + 63) >>> 6;
+                countRows(mines, height, width, adjacent, first, last,
+                        new long[words + 1], new long[words + 1], new long[words + 1]);
+                return;
+            }
+
+            int middle = (first + last) >>> 1;
+            invokeAll(new BandTask(mines, height, width, adjacent, first, middle),
+                    new BandTask(mines, height, width, adjacent, middle, last));
+        }
+    }
+}
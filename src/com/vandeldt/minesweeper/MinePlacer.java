@@ -0,0 +1,70 @@
+package com.vandeldt.minesweeper;
+
+import com.vandeldt.minesweeper.metrics.Metrics;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+// Picks mine positions in a single pass, so placement takes the same time however full the board is.
+final class MinePlacer {
+
+    private MinePlacer() {}
+
+    // Choose count distinct cells uniformly from [0, size), skipping the first num_excluded cells of the (ascending)
+    // excluded array. Uses Robert Floyd's sampling algorithm: every step places exactly one mine, so there are no
+    // retries even when nearly every cell is a mine. chosen must report the cells already passed to place.
+    static void place(SeedRandom rnd, int size, int count, int[] excluded, int num_excluded,
+                      IntPredicate chosen, IntConsumer place) {
+        int candidates = size - num_excluded;
+
+        for (int j = candidates - count; j < candidates; j++) {
+            int cell = skipExcluded(rnd.nextInt(j + 1), excluded, num_excluded);
+
+            // If we've drawn a cell that is already taken, j can't have been taken yet, so use that instead.
+            if (chosen.test(cell)) {
+                cell = skipExcluded(j, excluded, num_excluded);
+                if (Metrics.ENABLED) {
+                    Metrics.PLACEMENT_RETRIES.incrementAndGet();
+                }
+            }
+
+            place.accept(cell);
+        }
+    }
+
+    // Map a position among the candidate cells to a board index by stepping over each excluded cell before it.
+    private static int skipExcluded(int position, int[] excluded, int num_excluded) {
+        for (int i = 0; i < num_excluded; i++) {
+            if (position >= excluded[i]) {
+                position++;
+            }
+        }
+
+        return position;
+    }
+
+    // Find the board index of the n-th (from 0) clear bit in a bitset covering size cells.
+    static int nthClear(long[] bits, int size, int n) {
+        for (int word = 0; word < bits.length; word++) {
+            long clear = ~bits[word];
+
+            // Don't count bits past the end of the board.
+            int remaining = size - (word << 6);
+            if (remaining < 64) {
+                clear &= (1L << remaining) - 1;
+            }
+
+            int count = Long.bitCount(clear);
+            if (n < count) {
+                // Drop the lowest set bits until the one we want is lowest.
+                for (; n > 0; n--) {
+                    clear &= clear - 1;
+                }
+                return (word << 6) + Long.numberOfTrailingZeros(clear);
+            }
+            n -= count;
+        }
+
+        throw new IllegalArgumentException("Not enough free cells");
+    }
+}
@@ -2,6 +2,8 @@ package com.vandeldt.minesweeper;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 public class Minesweeper extends JFrame {
 
@@ -13,27 +15,60 @@ public class Minesweeper extends JFrame {
 
     // Constructor
     public Minesweeper(int height, int width, int mines) {
+        this(height, width, mines, false);
+    }
+
+    public Minesweeper(int height, int width, int mines, boolean no_guess) {
+        this(new Board(height, width, mines, height * width > Board.PAINTED_THRESHOLD, no_guess));
+    }
+
+    // Carry on with a saved game.
+    public Minesweeper(Game game) {
+        this(new Board(game, game.getHeight() * game.getWidth() > Board.PAINTED_THRESHOLD));
+    }
+
+    private Minesweeper(Board board) {
 
         // Create JFrame and set up window
         super("Minesweeper");
-        this.setIconImage( Cell.ICON_MINE.getImage() );
-        this.setDefaultCloseOperation(EXIT_ON_CLOSE);
+        Cell.setWindowIcon(this);
+
+        // Closing the window saves the game in progress so it can be resumed from the menu, and finishes the journal.
+        this.setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        this.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                try {
+                    board.save(GameFile.AUTO_SAVE).get();
+                } catch (Exception except) {
+                    System.err.println("Couldn't save the game: " + except.getMessage());
+                }
+                try {
+                    board.closeJournal().get();
+                } catch (Exception except) {
+                    System.err.println("Couldn't finish the journal: " + except.getMessage());
+                }
+                System.exit(0);
+            }
+        });
 
         this.setLayout(new GridBagLayout());
         GridBagConstraints constraints = new GridBagConstraints();
 
-        this.setResizable(false);
+        this.board = board;
 
-        board = new Board(height, width, mines);
+        // Painted boards can be bigger than the screen, so let the window resize around a scrolling view.
+        this.setResizable(board.isPainted());
 
         // Set up UI.
 
+        // Only the board row grows if the window is resized.
         constraints.weightx = 1;
-        constraints.weighty = 1;
+        constraints.weighty = 0;
         constraints.fill = 1;
 
         // Remaining flags label
-        lbl_remaining_flags = new JLabel(Integer.toString(Board.flags_remaining));
+        lbl_remaining_flags = new JLabel(Integer.toString(board.getFlagsRemaining()));
         lbl_remaining_flags.setHorizontalAlignment(0);
         constraints.gridx = 1;
         constraints.gridy = 1;
@@ -41,7 +76,7 @@ public class Minesweeper extends JFrame {
         add(lbl_remaining_flags, constraints);
 
         // Score label
-        lbl_score = new JLabel(Integer.toString(Board.num_revealed));
+        lbl_score = new JLabel(Integer.toString(board.getNumRevealed()));
         lbl_score.setHorizontalAlignment(0);
         constraints.gridx = 3;
         constraints.gridy = 1;
@@ -56,16 +91,33 @@ public class Minesweeper extends JFrame {
 
         btn_reset.addActionListener(e -> board.reset());
 
+        // Keep labels up to date as the game changes.
+        board.setStatusListener((flags_remaining, num_revealed) -> {
+            lbl_remaining_flags.setText(Integer.toString(flags_remaining));
+            lbl_score.setText(Integer.toString(num_revealed));
+        });
+
         add(btn_reset, constraints);
 
         // Add board to window
         constraints.gridx = 1;
         constraints.gridy = 2;
         constraints.gridwidth = 3;
-        add(board, constraints);
+        constraints.weighty = 1;
+        if (board.isPainted()) {
+            JScrollPane scroll_pane = new JScrollPane(board);
+            scroll_pane.setWheelScrollingEnabled(true);
+            add(scroll_pane, constraints);
+        } else {
+            add(board, constraints);
+        }
 
         // Show window
         this.pack();
         this.setVisible(true);
     }
+
+    public Board getBoard() {
+        return board;
+    }
 }
@@ -0,0 +1,54 @@
+package com.vandeldt.minesweeper;
+
+import java.util.random.RandomGenerator;
+
+// The SplitMix64 generator behind SplittableRandom, giving exactly the same numbers for the same seed, but able to be
+// reseeded in place so a game can be reset over and over without allocating a new generator each time.
+public final class SeedRandom implements RandomGenerator {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+
+    public SeedRandom(long seed) {
+        this.seed = seed;
+    }
+
+    // Start again from a new seed, as if newly created with it.
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // The current position in the sequence, which setSeed can return to.
+    long getState() {
+        return seed;
+    }
+
+    @Override
+    public long nextLong() {
+        long z = seed += GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public int nextInt() {
+        long z = seed += GOLDEN_GAMMA;
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    // Uniform in [0, bound), rejecting the few values that would make the result uneven.
+    @Override
+    public int nextInt(int bound) {
+        int r = nextInt();
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1);
+        return r;
+    }
+}
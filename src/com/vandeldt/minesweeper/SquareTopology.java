@@ -0,0 +1,69 @@
+package com.vandeldt.minesweeper;
+
+// The classic board: a rectangle where every cell touches the eight around it, fewer along the edges.
+public final class SquareTopology implements Topology {
+
+    private final int board_height, board_width;
+
+    public SquareTopology(int height, int width) {
+        this.board_height = height;
+        this.board_width = width;
+    }
+
+    @Override
+    public int neighbours(int index, int[] into) {
+        int row = index / board_width, col = index % board_width;
+
+        // Most cells are away from the edges and have all eight.
+        if (row > 0 && col > 0 && row < board_height - 1 && col < board_width - 1) {
+            int above = index - board_width, below = index + board_width;
+            into[0] = above - 1;
+            into[1] = above;
+            into[2] = above + 1;
+            into[3] = index - 1;
+            into[4] = index + 1;
+            into[5] = below - 1;
+            into[6] = below;
+            into[7] = below + 1;
+            return 8;
+        }
+
+        int count = 0;
+
+        for (int d_row = -1; d_row <= 1; d_row++) {
+            int r = row + d_row;
+            if (r < 0 || r >= board_height) {
+                continue;
+            }
+
+            for (int d_col = -1; d_col <= 1; d_col++) {
+                int c = col + d_col;
+                if ((d_row != 0 || d_col != 0) && c >= 0 && c < board_width) {
+                    into[count++] = index + d_row * board_width + d_col;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public int getMaxNeighbours() {
+        return 8;
+    }
+
+    @Override
+    public int getHeight() {
+        return board_height;
+    }
+
+    @Override
+    public int getWidth() {
+        return board_width;
+    }
+
+    @Override
+    public String getName() {
+        return "square";
+    }
+}
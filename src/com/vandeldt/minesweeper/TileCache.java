@@ -0,0 +1,57 @@
+package com.vandeldt.minesweeper;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Every tile (see Cell.tile) drawn once for a cell size into a single image laid out in a row, so painting a cell is
+// one blit from it instead of filling, outlining, laying out text and scaling an icon. The image is made compatible
+// with the screen, and as it never changes after it is drawn Java2D keeps it in video memory where it can. One cache
+// is kept per cell size, so zooming back to a size used before costs nothing.
+public final class TileCache {
+
+    private static final Map<Integer, TileCache> CACHES = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final BufferedImage atlas;
+
+    private TileCache(int size) {
+        this.size = size;
+
+        GraphicsConfiguration config = GraphicsEnvironment.isHeadless() ? null :
+                GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        this.atlas = config != null ? config.createCompatibleImage(Cell.TILES * size, size, Transparency.OPAQUE)
+                : new BufferedImage(Cell.TILES * size, size, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g = atlas.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(font(size));
+        for (int tile = 0; tile < Cell.TILES; tile++) {
+            Cell.drawTile(g, tile, tile * size, 0, size);
+        }
+        g.dispose();
+    }
+
+    // The tiles for a cell size, drawn the first time they are asked for.
+    public static TileCache forSize(int size) {
+        return CACHES.computeIfAbsent(size, TileCache::new);
+    }
+
+    // Font for the numbers on cells of a size: the button font, scaled from the normal cell size.
+    public static Font font(int size) {
+        Font font = UIManager.getFont("Button.font");
+        return font.deriveFont(font.getSize2D() * size / Cell.CELL_WIDTH);
+    }
+
+    // Draw a tile with its top left corner at (x, y).
+    public void draw(Graphics g, int tile, int x, int y) {
+        int from = tile * size;
+        g.drawImage(atlas, x, y, x + size, y + size, from, 0, from + size, size, null);
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,48 @@
+package com.vandeldt.minesweeper;
+
+// Which cells of a board are next to each other. Cells are numbered as Game numbers them, row * width + col over a grid
+// of getHeight() x getWidth(), whatever shape the board really is (a 3D board stacks its layers down the rows, say).
+// Neighbours are worked out from the index when they're asked for, or looked up in flat arrays (see CsrTopology), so
+// nothing is kept per cell beyond that. A neighbour is never listed twice, and a cell is never its own neighbour.
+public interface Topology {
+
+    // Fill into (which must hold at least getMaxNeighbours()) with the neighbours of a cell, in ascending index order
+    // where the shape allows, and return how many there are.
+    int neighbours(int index, int[] into);
+
+    // Most neighbours any cell can have.
+    int getMaxNeighbours();
+
+    int getHeight();
+
+    int getWidth();
+
+    // Short name, as given to forName.
+    String getName();
+
+    default int size() {
+        return getHeight() * getWidth();
+    }
+
+    // A topology by name: square, torus, hex or 3d:LAYERS (layers stacked down the height, which they must divide),
+    // any of them with csr: in front to have the neighbours listed up front rather than worked out.
+    static Topology forName(String name, int height, int width) {
+        if (name.startsWith("csr:")) {
+            return CsrTopology.of(forName(name.substring(4), height, width));
+        } else if (name.equals("square")) {
+            return new SquareTopology(height, width);
+        } else if (name.equals("torus")) {
+            return new TorusTopology(height, width);
+        } else if (name.equals("hex")) {
+            return new HexTopology(height, width);
+        } else if (name.matches("3d:\\d+")) {
+            int layers = Integer.parseInt(name.substring(3));
+            if (layers == 0 || height % layers != 0) {
+                throw new IllegalArgumentException("Layers must divide the height: " + name);
+            }
+            return new LayeredTopology(layers, height / layers, width);
+        }
+
+        throw new IllegalArgumentException("Unknown topology: " + name);
+    }
+}
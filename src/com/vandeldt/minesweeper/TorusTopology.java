@@ -0,0 +1,56 @@
+package com.vandeldt.minesweeper;
+
+// A square board whose edges wrap round, left to right and top to bottom, so every cell has eight neighbours. It needs
+// at least three rows and columns, or a cell would meet the same neighbour from both sides.
+public final class TorusTopology implements Topology {
+
+    private final int board_height, board_width;
+
+    public TorusTopology(int height, int width) {
+        if (height < 3 || width < 3) {
+            throw new IllegalArgumentException("A torus needs at least 3x3 cells");
+        }
+
+        this.board_height = height;
+        this.board_width = width;
+    }
+
+    // Neighbours row by row, each row left to right, wrapping at the edges (so not always in ascending order).
+    @Override
+    public int neighbours(int index, int[] into) {
+        int row = index / board_width, col = index % board_width;
+        int left = col == 0 ? board_width - 1 : col - 1, right = col == board_width - 1 ? 0 : col + 1;
+        int up = row == 0 ? board_height - 1 : row - 1, down = row == board_height - 1 ? 0 : row + 1;
+
+        int above = up * board_width, level = row * board_width, below = down * board_width;
+        into[0] = above + left;
+        into[1] = above + col;
+        into[2] = above + right;
+        into[3] = level + left;
+        into[4] = level + right;
+        into[5] = below + left;
+        into[6] = below + col;
+        into[7] = below + right;
+        return 8;
+    }
+
+    @Override
+    public int getMaxNeighbours() {
+        return 8;
+    }
+
+    @Override
+    public int getHeight() {
+        return board_height;
+    }
+
+    @Override
+    public int getWidth() {
+        return board_width;
+    }
+
+    @Override
+    public String getName() {
+        return "torus";
+    }
+}
@@ -0,0 +1,104 @@
+package com.vandeldt.minesweeper.bench;
+
+import com.vandeldt.minesweeper.MineCounter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Benchmarks for working out the adjacent mine count of every cell of a board, at the same mine density as Hard, up to
+// 100 million cells (give it -Xmx2g). Compares looking at each cell's neighbours and adding each mine to its neighbours
+// against MineCounter's bit-sliced count, on one thread and across the common fork-join pool. Arguments filter which
+// benchmarks run by name, e.g. "bitSliced".
+public class AdjacencyBenchmarks {
+
+    private static final int[] SIZES = {1000, 4000, 10000};
+    private static final double HARD_DENSITY = 99.0 / (16 * 30);
+
+    private static List<String> filters;
+
+    public static void main(String[] args) throws Exception {
+        filters = List.of(args);
+
+        Bench.header();
+        for (int size : SIZES) {
+            benchmark(size, size);
+        }
+    }
+
+    private static void benchmark(int height, int width) throws Exception {
+        int cells = height * width, num_mines = (int) (cells * HARD_DENSITY);
+        String params = height + "x" + width;
+
+        // Mine bits as Game keeps them, and the same mines as a list.
+        long[] mines = new long[(cells + 63) >>> 6];
+        int[] mine_list = new int[num_mines];
+        SplittableRandom rnd = new SplittableRandom(0);
+        for (int placed = 0; placed < num_mines; ) {
+            int index = rnd.nextInt(cells);
+            if ((mines[index >>> 6] & (1L << index)) == 0) {
+                mines[index >>> 6] |= 1L << index;
+                mine_list[placed++] = index;
+            }
+        }
+
+        byte[] adjacent = new byte[cells];
+        byte[] expected = new byte[cells];
+        perCell(mines, height, width, expected);
+
+        // The baseline: every cell looks at its eight neighbours.
+        run("perCell", params, () -> perCell(mines, height, width, adjacent), adjacent, expected);
+
+        // Every mine adds itself to its neighbours, as placing mines one at a time does.
+        run("perMine", params, () -> perMine(mine_list, height, width, adjacent), adjacent, expected);
+
+        MineCounter counter = new MineCounter(height, width);
+        run("bitSliced", params, () -> counter.countRows(mines, adjacent, 0, height), adjacent, expected);
+
+        String threads = params + " x" + Runtime.getRuntime().availableProcessors();
+        run("bitSlicedParallel", threads, () -> counter.count(mines, adjacent), adjacent, expected);
+    }
+
+    private static void perCell(long[] mines, int height, int width, byte[] adjacent) {
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                int count = 0;
+                for (int r = Math.max(0, row - 1); r <= Math.min(height - 1, row + 1); r++) {
+                    for (int c = Math.max(0, col - 1); c <= Math.min(width - 1, col + 1); c++) {
+                        int index = r * width + c;
+                        if ((r != row || c != col) && (mines[index >>> 6] & (1L << index)) != 0) {
+                            count++;
+                        }
+                    }
+                }
+                adjacent[row * width + col] = (byte) count;
+            }
+        }
+    }
+
+    private static void perMine(int[] mine_list, int height, int width, byte[] adjacent) {
+        Arrays.fill(adjacent, (byte) 0);
+        for (int mine : mine_list) {
+            int row = mine / width, col = mine % width;
+            for (int r = Math.max(0, row - 1); r <= Math.min(height - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(width - 1, col + 1); c++) {
+                    if (r != row || c != col) {
+                        adjacent[r * width + c]++;
+                    }
+                }
+            }
+        }
+    }
+
+    // Measure op, then check the counts it left, failing loudly rather than report the speed of a wrong answer.
+    private static void run(String name, String params, Bench.Op op, byte[] adjacent, byte[] expected)
+            throws Exception {
+        if (filters.isEmpty() || filters.stream().anyMatch(name::contains)) {
+            Arrays.fill(adjacent, (byte) -1);
+            Bench.measure(name, params, null, op);
+            if (!Arrays.equals(adjacent, expected)) {
+                throw new IllegalStateException(name + " counts differ from the per-cell baseline");
+            }
+        }
+    }
+}
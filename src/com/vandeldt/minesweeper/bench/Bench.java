@@ -0,0 +1,96 @@
+package com.vandeldt.minesweeper.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+// Small benchmark harness: runs an operation repeatedly for a warm-up period and then a measured period, reporting
+// throughput, latency percentiles, allocation per operation and garbage collections. Anything in the setup step runs
+// before each operation but isn't timed. Durations come from the bench.warmup and bench.time system properties (ms);
+// the measured period ends once the operations alone have taken bench.time, or the wall clock has taken five times
+// that when setup is slow, as long as a few operations have run.
+public final class Bench {
+
+    // An operation to measure.
+    public interface Op {
+        void run() throws Exception;
+    }
+
+    private static final long WARMUP_NANOS = Long.getLong("bench.warmup", 1000) * 1_000_000;
+    private static final long MEASURE_NANOS = Long.getLong("bench.time", 2000) * 1_000_000;
+    private static final int MAX_SAMPLES = 1 << 20;
+    private static final int MIN_OPS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final long[] samples = new long[MAX_SAMPLES];
+
+    private Bench() {}
+
+    // Print the header for the rows printed by measure.
+    public static void header() {
+        System.out.printf("%-28s %-14s %12s %10s %10s %10s %12s %10s %6s%n", "Benchmark", "Params", "ops/s",
+                "p50 us", "p99 us", "max us", "alloc B/op", "alloc MB/s", "gc");
+    }
+
+    // Measure op, running setup (if not null) untimed before each call, and print a row of results.
+    public static void measure(String name, String params, Op setup, Op op) throws Exception {
+        run(setup, op, WARMUP_NANOS);
+
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        long gc_before = gcCount(collectors);
+
+        int ops = 0;
+        long total = 0, allocated = 0;
+        long end = System.nanoTime() + 5 * MEASURE_NANOS;
+        while (ops < MIN_OPS || (total < MEASURE_NANOS && System.nanoTime() < end)) {
+            if (setup != null) {
+                setup.run();
+            }
+
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            op.run();
+            long time = System.nanoTime() - start;
+            allocated += THREADS.getCurrentThreadAllocatedBytes() - bytes;
+
+            if (ops < MAX_SAMPLES) {
+                samples[ops] = time;
+            }
+            ops++;
+            total += time;
+        }
+
+        long gcs = gcCount(collectors) - gc_before;
+        int recorded = Math.min(ops, MAX_SAMPLES);
+        Arrays.sort(samples, 0, recorded);
+
+        System.out.printf("%-28s %-14s %12.1f %10.1f %10.1f %10.1f %12d %10.1f %6d%n", name, params,
+                ops * 1e9 / total, percentile(recorded, 0.5) / 1e3, percentile(recorded, 0.99) / 1e3,
+                samples[recorded - 1] / 1e3, allocated / ops, allocated * 1e3 / total, gcs);
+    }
+
+    // Run op for the given time without recording anything.
+    private static void run(Op setup, Op op, long nanos) throws Exception {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            if (setup != null) {
+                setup.run();
+            }
+            op.run();
+        }
+    }
+
+    private static long percentile(int recorded, double fraction) {
+        return samples[Math.min(recorded - 1, (int) (recorded * fraction))];
+    }
+
+    private static long gcCount(List<GarbageCollectorMXBean> collectors) {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,169 @@
+package com.vandeldt.minesweeper.bench;
+
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.Menu;
+import com.vandeldt.minesweeper.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Benchmarks for the core game operations on the preset difficulties and large custom boards. Runs headless against
+// Game, so no display is needed. Arguments filter which benchmarks run by name, e.g. "cascade reset".
+public class GameBenchmarks {
+
+    // Custom board sizes, at the same mine density as Hard.
+    private static final int[] CUSTOM_SIZES = {1000, 4000};
+    private static final double HARD_DENSITY = 99.0 / (16 * 30);
+
+    // Density for cascade benchmarks, low enough that a click opens most of the board.
+    private static final double SPARSE_DENSITY = 0.01;
+
+    private static List<String> filters;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        filters = List.of(args);
+
+        // Board configurations: {Height, Width, Mines}.
+        List<int[]> configs = new ArrayList<>();
+        for (String difficulty : new String[]{"E", "M", "H"}) {
+            Integer[] settings = Menu.DIFFICULTIES.get(difficulty);
+            configs.add(new int[]{settings[0], settings[1], settings[2]});
+        }
+        for (int size : CUSTOM_SIZES) {
+            configs.add(new int[]{size, size, (int) (size * (long) size * HARD_DENSITY)});
+        }
+
+        Bench.header();
+        for (int[] config : configs) {
+            benchmark(config[0], config[1], config[2]);
+        }
+    }
+
+    private static void benchmark(int height, int width, int mines) throws Exception {
+        String params = height + "x" + width + "/" + mines;
+        int sparse_mines = Math.max(1, (int) (height * (long) width * SPARSE_DENSITY));
+        String sparse_params = height + "x" + width + "/" + sparse_mines;
+
+        Game game = new Game(height, width, mines, 0);
+        Game sparse = new Game(height, width, sparse_mines, 0);
+
+        // Seed whose board has a cell with no adjacent mines to start from.
+        long seed = playableSeed(game);
+        long sparse_seed = playableSeed(sparse);
+        game.reset(seed);
+        int zero = findZero(game);
+        int mine = findMine(game);
+        sparse.reset(sparse_seed);
+        int sparse_zero = findZero(sparse);
+
+        // Placing every mine on an untouched board.
+        long[] next_seed = {1};
+        run("armMines", params, null, () -> game.reset(next_seed[0]++));
+
+        // First click on a mine, which moves it before revealing.
+        run("firstClickRelocation", params, () -> game.reset(seed), () -> game.update(mine, Game.LEFT_CLICK));
+
+        // Click on an open area of a sparse board, cascading through most of it.
+        run("cascade", sparse_params, () -> sparse.reset(sparse_seed),
+                () -> sparse.update(sparse_zero, Game.LEFT_CLICK));
+
+        // Check whether every revealed cell can be chorded.
+        game.reset(seed);
+        game.update(zero, Game.LEFT_CLICK);
+        int[] revealed = revealedCells(game);
+        run("getChordStatus", params + " x" + revealed.length, null, () -> {
+            for (int index : revealed) {
+                game.getChordStatus(index);
+            }
+        });
+
+        // Chord a numbered cell once all its mines are flagged.
+        int numbered = findNumbered(game);
+        if (numbered >= 0) {
+            run("chord", params, () -> {
+                game.reset(seed);
+                game.update(zero, Game.LEFT_CLICK);
+                flagAround(game, numbered);
+            }, () -> game.update(numbered, Game.LEFT_CLICK));
+        }
+
+        // Reset after a game has been played.
+        run("reset", params, () -> {
+            game.reset(seed);
+            game.update(zero, Game.LEFT_CLICK);
+        }, () -> game.reset(seed));
+
+        // Hit a mine after playing, which ends the game and shows every mine and flag.
+        run("endGame", params, () -> {
+            game.reset(seed);
+            game.update(zero, Game.LEFT_CLICK);
+        }, () -> game.update(mine, Game.LEFT_CLICK));
+    }
+
+    private static void run(String name, String params, Bench.Op setup, Bench.Op op) throws Exception {
+        if (filters.isEmpty() || filters.stream().anyMatch(name::contains)) {
+            Bench.measure(name, params, setup, op);
+        }
+    }
+
+    // Helpers to find cells on a board. The benchmarks know where the mines are, unlike a player.
+
+    private static long playableSeed(Game game) {
+        for (long seed = 0; ; seed++) {
+            game.reset(seed);
+            if (findZero(game) >= 0 && findMine(game) >= 0) {
+                return seed;
+            }
+        }
+    }
+
+    private static int findZero(Game game) {
+        for (int i = 0; i < game.getHeight() * game.getWidth(); i++) {
+            if (!game.isMine(i) && game.getAdjacentMines(i) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int findMine(Game game) {
+        for (int i = 0; i < game.getHeight() * game.getWidth(); i++) {
+            if (game.isMine(i) && game.getState(i) == State.DEFAULT) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int findNumbered(Game game) {
+        for (int i = 0; i < game.getHeight() * game.getWidth(); i++) {
+            if (game.getState(i) == State.REVEALED && game.getAdjacentMines(i) > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] revealedCells(Game game) {
+        int[] revealed = new int[game.getNumRevealed()];
+        for (int i = 0, j = 0; i < game.getHeight() * game.getWidth(); i++) {
+            if (game.getState(i) == State.REVEALED) {
+                revealed[j++] = i;
+            }
+        }
+        return revealed;
+    }
+
+    private static void flagAround(Game game, int index) {
+        int width = game.getWidth(), row = index / width, col = index % width;
+        for (int d_row = -1; d_row <= 1; d_row++) {
+            for (int d_col = -1; d_col <= 1; d_col++) {
+                int r = row + d_row, c = col + d_col;
+                if (r >= 0 && c >= 0 && r < game.getHeight() && c < width && game.isMine(r * width + c)) {
+                    game.update(r * width + c, Game.RIGHT_CLICK);
+                }
+            }
+        }
+    }
+}
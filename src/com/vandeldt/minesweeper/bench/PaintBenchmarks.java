@@ -0,0 +1,86 @@
+package com.vandeldt.minesweeper.bench;
+
+import com.vandeldt.minesweeper.Cell;
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.State;
+import com.vandeldt.minesweeper.TileCache;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Benchmarks for painting a screenful of a large board at several cell sizes: drawing each cell from scratch (fill,
+// border, text layout, icon scaling) against blitting it from the TileCache. The board is part played, with a cascade
+// open, a sprinkling of flags and question marks and then a lost game's mines, so every kind of tile shows up. Runs
+// headless into an image the size of a 1080p screen. Arguments filter which benchmarks run by name.
+public class PaintBenchmarks {
+
+    private static final int SCREEN_WIDTH = 1920, SCREEN_HEIGHT = 1080;
+    private static final int[] SIZES = {6, 16, 26, 52};
+    private static final int BOARD_SIZE = 1000;
+    private static final double HARD_DENSITY = 99.0 / (16 * 30);
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        List<String> filters = List.of(args);
+
+        Game game = playedGame();
+        BufferedImage screen = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = screen.createGraphics();
+
+        Bench.header();
+        for (int size : SIZES) {
+            int rows = Math.min(BOARD_SIZE, SCREEN_HEIGHT / size + 1);
+            int cols = Math.min(BOARD_SIZE, SCREEN_WIDTH / size + 1);
+            String params = size + "px " + rows * cols;
+
+            if (filters.isEmpty() || filters.stream().anyMatch("paintDirect"::contains)) {
+                g.setFont(TileCache.font(size));
+                Bench.measure("paintDirect", params, null, () -> {
+                    for (int i = 0; i < rows; i++) {
+                        for (int j = 0; j < cols; j++) {
+                            Cell.drawTile(g, Cell.tile(game, i * BOARD_SIZE + j), j * size, i * size, size);
+                        }
+                    }
+                });
+            }
+
+            if (filters.isEmpty() || filters.stream().anyMatch("paintTiles"::contains)) {
+                TileCache tiles = TileCache.forSize(size);
+                Bench.measure("paintTiles", params, null, () -> {
+                    for (int i = 0; i < rows; i++) {
+                        for (int j = 0; j < cols; j++) {
+                            tiles.draw(g, Cell.tile(game, i * BOARD_SIZE + j), j * size, i * size);
+                        }
+                    }
+                });
+            }
+        }
+        g.dispose();
+    }
+
+    // A board with a bit of everything on it: open cells of every number, flags, question marks and, once lost, mines,
+    // wrong flags and the mine that ended it.
+    private static Game playedGame() {
+        int cells = BOARD_SIZE * BOARD_SIZE;
+        Game game = new Game(BOARD_SIZE, BOARD_SIZE, (int) (cells * HARD_DENSITY), 1);
+        SplittableRandom rnd = new SplittableRandom(1);
+
+        for (int i = 0; i < cells / 50; i++) {
+            int index = rnd.nextInt(cells);
+            if (!game.isMine(index)) {
+                game.reveal(index);
+            }
+        }
+        for (int i = 0; i < cells / 20; i++) {
+            game.flag(rnd.nextInt(cells));
+        }
+        for (int i = 0; !game.isGameOver(); i++) {
+            if (game.isMine(i) && game.getState(i) == State.DEFAULT) {
+                game.reveal(i);
+            }
+        }
+        return game;
+    }
+}
@@ -0,0 +1,184 @@
+package com.vandeldt.minesweeper.bench;
+
+import com.vandeldt.minesweeper.Board;
+import com.vandeldt.minesweeper.Menu;
+import com.vandeldt.minesweeper.Minesweeper;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+// Cold start times, each from a fresh JVM, measured from launching it: time to the menu's first frame, and time until
+// a game of each preset has been started from it, clicked as soon as its window was painted and the result shown.
+// Give presets or HEIGHTxWIDTHxMINES (E M H by default), -n for the number of starts of each, and JVM options for
+// the started JVMs after --, e.g. -XX:SharedArchiveFile=minesweeper.jsa to compare with a CDS archive (see cds.sh).
+// The JVMs get a scratch user.home so their journals and saves don't touch the real ones. Without a display there are
+// no windows, so the first frame is the board painted into an image instead.
+public class StartupBenchmarks {
+
+    private static final int DEFAULT_RUNS = 10;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("probe")) {
+            probe(settings(args[1]));
+            return;
+        }
+
+        int runs = DEFAULT_RUNS;
+        List<String> configs = new ArrayList<>(), jvm_options = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-n") && i + 1 < args.length) {
+                runs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--")) {
+                jvm_options.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            } else if (settings(args[i]) != null) {
+                configs.add(args[i]);
+            } else {
+                System.err.println("Usage: StartupBenchmarks [-n runs] [E|M|H|HEIGHTxWIDTHxMINES ...] " +
+                        "[-- jvm options]");
+                System.exit(1);
+            }
+        }
+        if (configs.isEmpty()) {
+            configs = List.of("E", "M", "H");
+        }
+
+        Path home = Files.createTempDirectory("minesweeper-startup");
+        try {
+            System.out.printf("%-14s %5s %10s %10s %10s %10s %10s %10s%n", "Config", "runs", "frame p50", "min", "max",
+                    "click p50", "min", "max");
+            for (String config : configs) {
+                long[] frames = new long[runs], clicks = new long[runs];
+                for (int i = 0; i < runs; i++) {
+                    long[] times = start(config, jvm_options, home);
+                    frames[i] = times[0];
+                    clicks[i] = times[1];
+                }
+                Arrays.sort(frames);
+                Arrays.sort(clicks);
+                System.out.printf("%-14s %5d %10d %10d %10d %10d %10d %10d%n", config, runs, frames[runs / 2],
+                        frames[0], frames[runs - 1], clicks[runs / 2], clicks[0], clicks[runs - 1]);
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(home)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    // Start a JVM running the probe and return the milliseconds from launching it to the first frame and first click.
+    private static long[] start(String config, List<String> jvm_options, Path home)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvm_options);
+        command.add("-Duser.home=" + home);
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), StartupBenchmarks.class.getName(),
+                "probe", config));
+
+        long launched = System.currentTimeMillis();
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String output = new String(process.getInputStream().readAllBytes()).trim();
+        if (process.waitFor() != 0 || !output.matches("\\d+ \\d+")) {
+            throw new IllegalStateException("Probe for " + config + " failed: " + output);
+        }
+
+        String[] times = output.split(" ");
+        return new long[]{Long.parseLong(times[0]) - launched, Long.parseLong(times[1]) - launched};
+    }
+
+    // One cold start: open the menu, start the game from it once it's painted, then click the game once that's
+    // painted. Prints when the first frame was painted and when the click's result was applied, as milliseconds
+    // since the epoch so that the launching JVM can take off when it started this one.
+    private static void probe(int[] settings) throws Exception {
+        CompletableFuture<Long> frame = new CompletableFuture<>(), click = new CompletableFuture<>();
+
+        SwingUtilities.invokeLater(() -> {
+            if (GraphicsEnvironment.isHeadless()) {
+                Board board = new Board(settings[0], settings[1], settings[2]);
+                board.setStatusListener((flags_remaining, num_revealed) -> click.complete(System.currentTimeMillis()));
+                board.setSize(board.getPreferredSize());
+                board.doLayout();
+
+                BufferedImage image = new BufferedImage(board.getWidth(), board.getHeight(),
+                        BufferedImage.TYPE_INT_RGB);
+                Graphics g = image.createGraphics();
+                board.paint(g);
+                g.dispose();
+                frame.complete(System.currentTimeMillis());
+
+                clickFirstCell(board);
+            } else {
+                Menu menu = new Menu();
+                onFirstPaint(menu, painted -> {
+                    frame.complete(painted);
+
+                    // As the menu's confirm button does.
+                    Minesweeper game = new Minesweeper(settings[0], settings[1], settings[2]);
+                    menu.dispose();
+                    game.lbl_score.addPropertyChangeListener("text", e -> click.complete(System.currentTimeMillis()));
+                    onFirstPaint(game, game_painted -> clickFirstCell(game.getBoard()));
+                });
+            }
+        });
+
+        System.out.println(frame.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) + " " +
+                click.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        System.exit(0);
+    }
+
+    // Call back on the event thread, with the time, once a window has first been painted. The glass pane is painted
+    // last, and draws nothing.
+    private static void onFirstPaint(JFrame window, LongConsumer callback) {
+        JComponent glass_pane = new JComponent() {
+            private boolean painted = false;
+
+            @Override
+            protected void paintComponent(Graphics g) {
+                if (!painted) {
+                    painted = true;
+                    long time = System.currentTimeMillis();
+                    SwingUtilities.invokeLater(() -> callback.accept(time));
+                }
+            }
+        };
+        window.setGlassPane(glass_pane);
+        glass_pane.setVisible(true);
+    }
+
+    // Press the left button on the top left cell, the first one a board builds, as a player would.
+    private static void clickFirstCell(Board board) {
+        Component target = SwingUtilities.getDeepestComponentAt(board, 1, 1);
+        Point point = SwingUtilities.convertPoint(board, 1, 1, target);
+        target.dispatchEvent(new MouseEvent(target, MouseEvent.MOUSE_PRESSED, System.currentTimeMillis(), 0,
+                point.x, point.y, 1, false, MouseEvent.BUTTON1));
+    }
+
+    // Height, width and mines for a preset or HEIGHTxWIDTHxMINES, or null if it's neither.
+    private static int[] settings(String config) {
+        if (Menu.DIFFICULTIES.containsKey(config)) {
+            Integer[] preset = Menu.DIFFICULTIES.get(config);
+            return new int[]{preset[0], preset[1], preset[2]};
+        } else if (config.matches("\\d+x\\d+x\\d+")) {
+            String[] parts = config.split("x");
+            return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+        }
+        return null;
+    }
+}
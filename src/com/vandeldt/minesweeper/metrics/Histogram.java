@@ -0,0 +1,124 @@
+package com.vandeldt.minesweeper.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Counts of non-negative values in log-linear buckets, like HdrHistogram: exact below 32, then 32 buckets for every
+// power of two, so any value is placed to within about 3%. The buckets cover every long up front, so recording is a few
+// atomic increments and never allocates. Any thread may record; readers see a close enough picture without locking.
+public final class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB + (63 - SUB_BITS) * SUB;
+
+    private final String name;
+    private final boolean nanos;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong(), sum = new AtomicLong(), max = new AtomicLong();
+
+    // Constructor. nanos says whether the values are times in nanoseconds, for printing.
+    public Histogram(String name, boolean nanos) {
+        this.name = name;
+        this.nanos = nanos;
+    }
+
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value));
+    }
+
+    // Bucket of a value: the value itself below SUB, otherwise its power of two and the next SUB_BITS bits below the
+    // top one.
+    static int index(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return SUB + shift * SUB + (int) (value >>> shift) - SUB;
+    }
+
+    // Largest value that lands in a bucket.
+    static long highest(int index) {
+        if (index < SUB) {
+            return index;
+        }
+
+        int shift = index / SUB - 1;
+        return ((long) (SUB + index % SUB) << shift) + (1L << shift) - 1;
+    }
+
+    // The value below which the given percentage of recorded values fall (to within a bucket).
+    public long percentile(double percent) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(total * percent / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highest(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    // One line: count, mean, percentiles and max.
+    public String summary() {
+        return String.format("%-14s %9d  mean %8s  p50 %8s  p99 %8s  max %8s", name, getCount(),
+                format(Math.round(getMean())), format(percentile(50)), format(percentile(99)), format(getMax()));
+    }
+
+    private String format(long value) {
+        if (!nanos) {
+            return Long.toString(value);
+        } else if (value < 10_000) {
+            return value + "ns";
+        } else if (value < 10_000_000) {
+            return value / 1000 + "us";
+        } else {
+            return value / 1_000_000 + "ms";
+        }
+    }
+
+    // Getters
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isNanos() {
+        return nanos;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMean() {
+        long total = count.get();
+        return total == 0 ? 0 : sum.get() / (double) total;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+}
@@ -0,0 +1,51 @@
+package com.vandeldt.minesweeper.metrics;
+
+import java.beans.ConstructorProperties;
+
+// What a histogram holds at one moment, as JMX shows it. Times are in nanoseconds.
+public class HistogramSummary {
+
+    private final long count, p50, p90, p99, max;
+    private final double mean;
+
+    HistogramSummary(Histogram histogram) {
+        this(histogram.getCount(), histogram.getMean(), histogram.percentile(50), histogram.percentile(90),
+                histogram.percentile(99), histogram.getMax());
+    }
+
+    @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "max"})
+    public HistogramSummary(long count, double mean, long p50, long p90, long p99, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    // Getters
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getMax() {
+        return max;
+    }
+}
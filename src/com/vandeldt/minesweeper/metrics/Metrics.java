@@ -0,0 +1,116 @@
+package com.vandeldt.minesweeper.metrics;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Counters and histograms for the hot paths of the game and board, off unless the JVM is started with
+// -Dminesweeper.metrics=true. Every call site checks ENABLED first; as a static final constant the JIT folds the check
+// away, so with metrics off the instrumented code compiles as if the instrumentation weren't there (and the histograms
+// below are never even created). With metrics on they are registered as an MXBean under
+// com.vandeldt.minesweeper:type=Metrics, and F3 on the board shows them over the game.
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("minesweeper.metrics");
+
+    // Times in nanoseconds: from a click on the board until the engine has made the move, one game action, one reveal
+    // cascade, placing the mines, ending the game (from the action that ends it until the board has shown the result),
+    // a reset, and updating the labels next to the board.
+    public static final Histogram CLICK = histogram("click", true);
+    public static final Histogram ACTION = histogram("action", true);
+    public static final Histogram CASCADE = histogram("cascade", true);
+    public static final Histogram ARM_MINES = histogram("arm mines", true);
+    public static final Histogram END_GAME = histogram("end game", true);
+    public static final Histogram RESET = histogram("reset", true);
+    public static final Histogram UPDATE_PARENT = histogram("update labels", true);
+
+    // Sizes: cells revealed by each action, and the cells opened and rings spread through by each cascade.
+    public static final Histogram CELLS_PER_ACTION = histogram("cells/action", false);
+    public static final Histogram CASCADE_SIZE = histogram("cascade size", false);
+    public static final Histogram CASCADE_DEPTH = histogram("cascade depth", false);
+
+    // Counts: mines that landed on a cell already taken and had to be placed again, repaints the board asked for and
+    // paints Swing actually ran.
+    public static final AtomicLong PLACEMENT_RETRIES = counter("placement retries");
+    public static final AtomicLong REPAINTS = counter("repaints");
+    public static final AtomicLong PAINTS = counter("paints");
+
+    private static Map<String, Histogram> histograms;
+    private static Map<String, AtomicLong> counters;
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(),
+                        new ObjectName("com.vandeldt.minesweeper:type=Metrics"));
+            } catch (Exception e) {
+                System.err.println("Metrics not registered: " + e);
+            }
+        }
+    }
+
+    private Metrics() {}
+
+    private static Histogram histogram(String name, boolean nanos) {
+        if (!ENABLED) {
+            return null;
+        }
+        if (histograms == null) {
+            histograms = new LinkedHashMap<>();
+        }
+
+        Histogram histogram = new Histogram(name, nanos);
+        histograms.put(name, histogram);
+        return histogram;
+    }
+
+    private static AtomicLong counter(String name) {
+        if (!ENABLED) {
+            return null;
+        }
+        if (counters == null) {
+            counters = new LinkedHashMap<>();
+        }
+
+        AtomicLong counter = new AtomicLong();
+        counters.put(name, counter);
+        return counter;
+    }
+
+    public static Map<String, Histogram> getHistograms() {
+        return ENABLED ? histograms : Map.of();
+    }
+
+    public static Map<String, AtomicLong> getCounters() {
+        return ENABLED ? counters : Map.of();
+    }
+
+    // Everything as lines of text, e.g. for the overlay.
+    public static List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        if (!ENABLED) {
+            lines.add("Metrics are off: start with -Dminesweeper.metrics=true");
+            return lines;
+        }
+
+        for (Histogram histogram : histograms.values()) {
+            lines.add(histogram.summary());
+        }
+        for (Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+            lines.add(String.format("%-14s %9d", counter.getKey(), counter.getValue().get()));
+        }
+        return lines;
+    }
+
+    // Start counting again from nothing.
+    public static void reset() {
+        if (ENABLED) {
+            histograms.values().forEach(Histogram::reset);
+            counters.values().forEach(counter -> counter.set(0));
+        }
+    }
+}
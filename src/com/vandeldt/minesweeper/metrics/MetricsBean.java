@@ -0,0 +1,27 @@
+package com.vandeldt.minesweeper.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// MXBean over the static metrics.
+final class MetricsBean implements MetricsMXBean {
+
+    @Override
+    public Map<String, HistogramSummary> getHistograms() {
+        Map<String, HistogramSummary> summaries = new LinkedHashMap<>();
+        Metrics.getHistograms().forEach((name, histogram) -> summaries.put(name, new HistogramSummary(histogram)));
+        return summaries;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        Metrics.getCounters().forEach((name, counter) -> counts.put(name, counter.get()));
+        return counts;
+    }
+
+    @Override
+    public void reset() {
+        Metrics.reset();
+    }
+}
@@ -0,0 +1,16 @@
+package com.vandeldt.minesweeper.metrics;
+
+import java.util.Map;
+
+// The metrics as seen over JMX (e.g. in JConsole or VisualVM).
+public interface MetricsMXBean {
+
+    // Summary of every histogram by name.
+    Map<String, HistogramSummary> getHistograms();
+
+    // Every counter by name.
+    Map<String, Long> getCounters();
+
+    // Start counting again from nothing.
+    void reset();
+}
@@ -0,0 +1,394 @@
+package com.vandeldt.minesweeper.server;
+
+import com.vandeldt.minesweeper.Game;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hosts many independent games at once for remote players and bots, speaking Protocol over TCP. One thread accepts
+// connections and hands each to one of a few I/O loops (one per core by default), each a non-blocking Selector. A
+// connection's games live on its loop's thread, so they are played straight from the read without locking or hand-offs:
+// an action takes microseconds, and only the cells it changed are sent back.
+//
+//   java -cp out/production/Minesweeper com.vandeldt.minesweeper.server.GameServer [-p port] [-t threads]
+public class GameServer {
+
+    public static final int DEFAULT_PORT = 7421;
+
+    // Limits on what clients can take. A game takes up to about 16 bytes a cell at worst (states, counts and the
+    // lists of opened cells, touched cells and mines), so the cells of all games on the server come to at most about
+    // 2 GB. Each connection has up to 64 games of 4 million cells between them (64 MB at most), and up to 16 MB of
+    // replies queued while the client isn't reading (it isn't read from until they drain), plus the reply that went
+    // over. Connections past the limit are closed as soon as they are accepted.
+    private static final int MAX_CONNECTIONS = 4096;
+    private static final long MAX_SERVER_CELLS = 1L << 27;
+    private static final int MAX_GAMES = 64;
+    private static final long MAX_CELLS = 1 << 22;
+    private static final int MAX_PENDING = 16 << 20;
+
+    private final ServerSocketChannel server;
+    private final Loop[] loops;
+    private volatile boolean running = true;
+
+    private final AtomicLong connections = new AtomicLong(), requests = new AtomicLong();
+    private final AtomicLong total_cells = new AtomicLong();
+
+    // Constructor. Port 0 picks a free port (see getPort).
+    public GameServer(int port, int threads) throws IOException {
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(port), 1024);
+
+        this.loops = new Loop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new Loop();
+        }
+    }
+
+    // Start the I/O loops and the thread accepting connections.
+    public void start() {
+        for (int i = 0; i < loops.length; i++) {
+            Thread thread = new Thread(loops[i], "server-io-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Thread acceptor = new Thread(this::accept, "server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // Take new connections and deal them out to the loops in turn.
+    private void accept() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = server.accept();
+                if (connections.get() >= MAX_CONNECTIONS) {
+                    channel.close();
+                    continue;
+                }
+
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connections.incrementAndGet();
+                loops[next].add(channel);
+                next = (next + 1) % loops.length;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public void stop() throws IOException {
+        running = false;
+        server.close();
+        for (Loop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    // One selector and the connections on it.
+    private final class Loop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<SocketChannel> added = new ConcurrentLinkedQueue<>();
+
+        Loop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        void add(SocketChannel channel) {
+            added.add(channel);
+            selector.wakeup();
+        }
+
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+
+                    for (SocketChannel channel; (channel = added.poll()) != null; ) {
+                        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                        key.attach(new Connection(channel, key));
+                    }
+
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                        } catch (IOException e) {
+                            connection.close();
+                        } catch (RuntimeException e) {
+                            // A bug or a request the checks missed: only this connection goes.
+                            connection.fail(e);
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Server loop failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // A client and its games, only ever used from its loop's thread.
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+        private ByteBuffer out = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+
+        private final Map<Integer, Game> games = new HashMap<>();
+        private long cells = 0;
+        private int next_id = 1;
+        private boolean paused = false;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            process();
+        }
+
+        // Handle every whole request that has arrived, then send the replies.
+        private void process() throws IOException {
+            in.flip();
+            while (in.remaining() >= 4) {
+                if (out.position() >= MAX_PENDING) {
+                    paused = true;
+                    break;
+                }
+
+                int length = in.getInt(in.position());
+                if (length < 1 || length > Protocol.MAX_REQUEST - 4) {
+                    close();
+                    return;
+                }
+                if (in.remaining() < 4 + length) {
+                    break;
+                }
+
+                in.getInt();
+                int end = in.position() + length, reply_start = out.position();
+                try {
+                    handle(in.get(), length - 1);
+                } catch (RuntimeException e) {
+                    // Leave out any half-written reply, so the error follows the replies before it.
+                    out.position(reply_start);
+                    throw e;
+                }
+                in.position(end);
+                requests.incrementAndGet();
+            }
+            in.compact();
+
+            flush();
+        }
+
+        private void handle(byte type, int length) {
+            if (type == Protocol.NEW_GAME && length == 21) {
+                newGame(in.getInt(), in.getInt(), in.getInt(), in.getLong(), (in.get() & Protocol.SAFE_ZONE) != 0);
+                return;
+            }
+
+            int id = length >= 4 ? in.getInt() : 0;
+            Game game = games.get(id);
+            if (game == null) {
+                error(id, Protocol.UNKNOWN_GAME);
+                return;
+            }
+
+            if ((type == Protocol.REVEAL || type == Protocol.FLAG || type == Protocol.CHORD) && length == 8) {
+                int index = in.getInt();
+                if (index < 0 || index >= game.getHeight() * game.getWidth()) {
+                    error(id, Protocol.BAD_REQUEST);
+                    return;
+                }
+
+                switch (type) {
+                    case Protocol.REVEAL -> game.reveal(index);
+                    case Protocol.FLAG -> game.flag(index);
+                    default -> game.chord(index);
+                }
+                changes(id, game);
+            } else if (type == Protocol.RESET && length == 12) {
+                game.reset(in.getLong());
+                changes(id, game);
+            } else if (type == Protocol.CLOSE && length == 4) {
+                games.remove(id);
+                release((long) game.getHeight() * game.getWidth());
+            } else {
+                error(id, Protocol.BAD_REQUEST);
+            }
+        }
+
+        private void newGame(int height, int width, int mines, long seed, boolean safe_zone) {
+            long cells = (long) height * width;
+            if (height <= 0 || width <= 0 || cells < 2 || mines <= 0 || mines >= cells) {
+                error(0, Protocol.BAD_REQUEST);
+            } else if (this.cells + cells > MAX_CELLS) {
+                error(0, Protocol.BOARD_TOO_LARGE);
+            } else if (games.size() >= MAX_GAMES) {
+                error(0, Protocol.TOO_MANY_GAMES);
+            } else if (total_cells.addAndGet(cells) > MAX_SERVER_CELLS) {
+                total_cells.addAndGet(-cells);
+                error(0, Protocol.SERVER_FULL);
+            } else {
+                this.cells += cells;
+                int id = next_id++;
+                games.put(id, new Game(height, width, mines, seed, safe_zone));
+                reply(9);
+                Protocol.putGame(out, id);
+            }
+        }
+
+        // Give back the cells of a game that has gone.
+        private void release(long game_cells) {
+            cells -= game_cells;
+            total_cells.addAndGet(-game_cells);
+        }
+
+        private void error(int id, byte error) {
+            reply(10);
+            Protocol.putError(out, id, error);
+        }
+
+        private void changes(int id, Game game) {
+            int count = game.getChanges().isReset() ? 0 : game.getChanges().size();
+            reply(Protocol.CHANGES_HEADER + (long) count * Protocol.CELL_BYTES);
+            Protocol.putChanges(out, id, game);
+        }
+
+        // Make room in the output buffer for a reply of the given size.
+        private void reply(long bytes) {
+            if (out.remaining() < bytes) {
+                long capacity = out.capacity();
+                while (capacity - out.position() < bytes) {
+                    capacity *= 2;
+                }
+                ByteBuffer bigger = ByteBuffer.allocate((int) Math.min(capacity, Integer.MAX_VALUE - 8))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                out = bigger.put(out.flip());
+            }
+        }
+
+        // Send as much as the socket takes, and wait for it to be writable if anything is left. Reading stops while
+        // too much is waiting to go out.
+        void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+
+            boolean backed_up = out.position() >= MAX_PENDING;
+            key.interestOps((out.position() > 0 ? SelectionKey.OP_WRITE : 0) | (backed_up ? 0 : SelectionKey.OP_READ));
+
+            // Carry on with the requests that were left waiting while replies backed up.
+            if (paused && !backed_up) {
+                paused = false;
+                process();
+            }
+        }
+
+        void close() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing more to do with it.
+            }
+            games.clear();
+            release(cells);
+            connections.decrementAndGet();
+        }
+
+        // Answer BAD_REQUEST, as far as the socket takes it without waiting, then close.
+        void fail(RuntimeException e) {
+            System.err.println("Closing a connection after an error: " + e);
+            try {
+                error(0, Protocol.BAD_REQUEST);
+                out.flip();
+                channel.write(out);
+            } catch (IOException | RuntimeException ignored) {
+                // Closing anyway.
+            }
+            close();
+        }
+    }
+
+    // Getters
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    public long getConnections() {
+        return connections.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT, threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-p" -> port = Integer.parseInt(args[++i]);
+                case "-t" -> threads = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Usage: GameServer [-p port] [-t threads]");
+                    System.exit(1);
+                }
+            }
+        }
+
+        GameServer server = new GameServer(port, threads);
+        server.start();
+        System.out.printf("Listening on port %d with %d I/O threads%n", server.getPort(), threads);
+
+        // Report the load every ten seconds.
+        long last = 0;
+        while (true) {
+            Thread.sleep(10_000);
+            long now = server.getRequests();
+            System.out.printf("%d connections, %.0f requests/s%n", server.getConnections(), (now - last) / 10.0);
+            last = now;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.vandeldt.minesweeper.server;
+
+import com.vandeldt.minesweeper.Menu;
+import com.vandeldt.minesweeper.metrics.Histogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load test for GameServer: opens thousands of connections, each playing one or more games of random clicks as fast as
+// the server answers (one request in flight per game), and reports requests per second and latency percentiles. Each
+// game keeps the board as the server describes it, so clicks land on hidden cells; lost and won games are reset. Before
+// the reset each finished game gets one more click, whose reply must list no cells, since a finished game can't change.
+//
+//   java -cp out/production/Minesweeper com.vandeldt.minesweeper.server.LoadClient [-h host] [-p port]
+//        [-c connections] [-g games per connection] [-d seconds] [-w warmup seconds] [-t threads] [-local] [-safe]
+//        [E|M|H|HEIGHTxWIDTHxMINES]
+//
+// -local starts a server in the same process on a free port, for a quick run on one machine.
+public class LoadClient {
+
+    private final String host;
+    private final int port, height, width, mines, games_per_connection;
+    private final boolean safe_zone;
+
+    // Latency of every reply once warmed up, and the counters.
+    private final Histogram latency = new Histogram("latency", true);
+    private final AtomicLong replies = new AtomicLong(), games_won = new AtomicLong(), games_lost = new AtomicLong(),
+            errors = new AtomicLong(), stale_changes = new AtomicLong();
+    private volatile boolean measuring = false, running = true;
+
+    // Constructor
+    public LoadClient(String host, int port, int height, int width, int mines, int games_per_connection,
+                      boolean safe_zone) {
+        this.host = host;
+        this.port = port;
+        this.height = height;
+        this.width = width;
+        this.mines = mines;
+        this.games_per_connection = games_per_connection;
+        this.safe_zone = safe_zone;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "localhost", config = "M";
+        int port = GameServer.DEFAULT_PORT, connections = 2000, games = 1, threads = 1;
+        double seconds = 10, warmup = 3;
+        boolean local = false, safe_zone = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-h" -> host = args[++i];
+                case "-p" -> port = Integer.parseInt(args[++i]);
+                case "-c" -> connections = Integer.parseInt(args[++i]);
+                case "-g" -> games = Integer.parseInt(args[++i]);
+                case "-d" -> seconds = Double.parseDouble(args[++i]);
+                case "-w" -> warmup = Double.parseDouble(args[++i]);
+                case "-t" -> threads = Integer.parseInt(args[++i]);
+                case "-local" -> local = true;
+                case "-safe" -> safe_zone = true;
+                default -> config = args[i];
+            }
+        }
+
+        // A preset difficulty, or HEIGHTxWIDTHxMINES.
+        int[] settings;
+        if (Menu.DIFFICULTIES.containsKey(config)) {
+            Integer[] preset = Menu.DIFFICULTIES.get(config);
+            settings = new int[]{preset[0], preset[1], preset[2]};
+        } else if (config.matches("\\d+x\\d+x\\d+")) {
+            String[] parts = config.split("x");
+            settings = new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+        } else {
+            System.err.println("Usage: LoadClient [-h host] [-p port] [-c connections] [-g games per connection] " +
+                    "[-d seconds] [-w warmup seconds] [-t threads] [-local] [-safe] [E|M|H|HEIGHTxWIDTHxMINES]");
+            System.exit(1);
+            return;
+        }
+
+        GameServer server = null;
+        if (local) {
+            server = new GameServer(0, Runtime.getRuntime().availableProcessors());
+            server.start();
+            host = "localhost";
+            port = server.getPort();
+        }
+
+        System.out.printf("%d connections x %d games of %dx%d/%d against %s:%d, %d client threads%n", connections,
+                games, settings[0], settings[1], settings[2], host, port, threads);
+        LoadClient client = new LoadClient(host, port, settings[0], settings[1], settings[2], games, safe_zone);
+        client.run(connections, threads, (long) (warmup * 1000), (long) (seconds * 1000));
+
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    // Drive the connections from the given number of threads, then print the results of the measured part.
+    public void run(int connections, int threads, long warmup_millis, long millis) throws Exception {
+        Driver[] drivers = new Driver[threads];
+        Thread[] thread_list = new Thread[threads];
+        SplittableRandom master = new SplittableRandom();
+        for (int i = 0; i < threads; i++) {
+            drivers[i] = new Driver(connections / threads + (i < connections % threads ? 1 : 0), master.split());
+            thread_list[i] = new Thread(drivers[i], "load-" + i);
+            thread_list[i].start();
+        }
+
+        Thread.sleep(warmup_millis);
+        long start_replies = replies.get(), start = System.nanoTime();
+        measuring = true;
+        Thread.sleep(millis);
+        measuring = false;
+        long done = replies.get() - start_replies, elapsed = System.nanoTime() - start;
+
+        running = false;
+        for (Thread thread : thread_list) {
+            thread.join();
+        }
+        for (Driver driver : drivers) {
+            if (driver.failure != null) {
+                throw new IllegalStateException("Load driver failed", driver.failure);
+            }
+        }
+
+        System.out.printf("%d requests in %.1f s: %.0f requests/s%n", done, elapsed / 1e9, done / (elapsed / 1e9));
+        System.out.printf("latency p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                latency.percentile(50) / 1e6, latency.percentile(99) / 1e6, latency.percentile(99.9) / 1e6,
+                latency.getMax() / 1e6);
+        System.out.printf("%d games won, %d lost, %d errors, %d clicks after the end that changed cells%n",
+                games_won.get(), games_lost.get(), errors.get(), stale_changes.get());
+    }
+
+    // One thread's connections on a selector.
+    private final class Driver implements Runnable {
+
+        private final int connections;
+        private final SplittableRandom rnd;
+        private Throwable failure;
+
+        Driver(int connections, SplittableRandom rnd) {
+            this.connections = connections;
+            this.rnd = rnd;
+        }
+
+        public void run() {
+            try (Selector selector = Selector.open()) {
+                for (int i = 0; i < connections; i++) {
+                    SocketChannel channel = SocketChannel.open();
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    channel.connect(new InetSocketAddress(host, port));
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT);
+                    key.attach(new Connection(channel, key, rnd.split()));
+                }
+
+                while (running) {
+                    selector.select(100);
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isValid() && key.isConnectable()) {
+                            connection.connected();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+    }
+
+    // A game being played, as far as the client can see it.
+    private final class Session {
+        int id;
+        final byte[] view = new byte[height * width];
+        long sent;
+        boolean over;
+
+        Session() {
+            Arrays.fill(view, Protocol.HIDDEN);
+        }
+    }
+
+    // A connection and its games. Replies come back in the order requests went out, so the session each reply is for
+    // is the one at the head of the queue.
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final SplittableRandom rnd;
+        private ByteBuffer in = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+        private final ByteBuffer out = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+        private final Queue<Session> waiting = new ArrayDeque<>();
+
+        Connection(SocketChannel channel, SelectionKey key, SplittableRandom rnd) {
+            this.channel = channel;
+            this.key = key;
+            this.rnd = rnd;
+        }
+
+        void connected() throws IOException {
+            channel.finishConnect();
+            for (int i = 0; i < games_per_connection; i++) {
+                Session session = new Session();
+                Protocol.putNewGame(out, height, width, mines, rnd.nextLong(), safe_zone);
+                session.sent = System.nanoTime();
+                waiting.add(session);
+            }
+            flush();
+        }
+
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+
+            in.flip();
+            while (in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (in.remaining() < 4 + length) {
+                    // Make room for a reply bigger than the buffer, e.g. a large board being lost.
+                    if (in.capacity() < 4 + length) {
+                        in = ByteBuffer.allocate(Integer.highestOneBit(4 + length) * 2).order(ByteOrder.LITTLE_ENDIAN)
+                                .put(in);
+                        in.flip();
+                    }
+                    break;
+                }
+
+                in.getInt();
+                int end = in.position() + length;
+                reply(waiting.remove(), in.get());
+                in.position(end);
+            }
+            in.compact();
+
+            flush();
+        }
+
+        // Take in a reply and send the session's next request.
+        private void reply(Session session, byte type) {
+            long now = System.nanoTime();
+            replies.incrementAndGet();
+            if (measuring) {
+                latency.record(now - session.sent);
+            }
+
+            if (type == Protocol.GAME) {
+                session.id = in.getInt();
+            } else if (type == Protocol.CHANGES) {
+                in.getInt();
+                in.getInt();
+                in.getInt();
+                byte status = in.get();
+                int count = in.getInt();
+
+                if ((status & Protocol.WAS_RESET) != 0) {
+                    Arrays.fill(session.view, Protocol.HIDDEN);
+                }
+                for (int i = 0; i < count; i++) {
+                    int index = in.getInt();
+                    session.view[index] = in.get();
+                }
+
+                // Click the finished game once more and check nothing came back, then start a new one.
+                if (session.over) {
+                    if (count > 0) {
+                        stale_changes.incrementAndGet();
+                    }
+                    session.over = false;
+                    send(session, () -> Protocol.putReset(out, session.id, rnd.nextLong()));
+                    return;
+                } else if ((status & Protocol.OVER) != 0) {
+                    ((status & Protocol.WON) != 0 ? games_won : games_lost).incrementAndGet();
+                    session.over = true;
+                    int cell = rnd.nextInt(session.view.length);
+                    send(session, () -> Protocol.putMove(out, Protocol.REVEAL, session.id, cell));
+                    return;
+                }
+            } else {
+                errors.incrementAndGet();
+            }
+
+            move(session);
+        }
+
+        // Reveal a hidden cell, or now and then flag one.
+        private void move(Session session) {
+            int start = rnd.nextInt(session.view.length), index = -1;
+            for (int i = 0; i < session.view.length && index < 0; i++) {
+                int candidate = (start + i) % session.view.length;
+                if (session.view[candidate] == Protocol.HIDDEN) {
+                    index = candidate;
+                }
+            }
+
+            int cell = Math.max(index, 0);
+            byte type = index >= 0 && rnd.nextInt(10) != 0 ? Protocol.REVEAL : Protocol.FLAG;
+            send(session, () -> Protocol.putMove(out, type, session.id, cell));
+        }
+
+        private void send(Session session, Runnable request) {
+            request.run();
+            session.sent = System.nanoTime();
+            waiting.add(session);
+        }
+
+        void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            key.interestOps(SelectionKey.OP_READ | (out.position() > 0 ? SelectionKey.OP_WRITE : 0));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.vandeldt.minesweeper.server;
+
+import com.vandeldt.minesweeper.ChangeSet;
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.State;
+
+import java.nio.ByteBuffer;
+
+// Wire format between GameServer and its clients. Every message is an int giving the length of the rest, a type byte
+// and the fields below, all little-endian. Requests are answered in the order they arrive on a connection, and one
+// connection may play several games, told apart by the id the server gives each one.
+//
+// Requests:
+//   NEW_GAME  int height, int width, int mines, long seed, byte flags (1 safe zone)   ->  GAME
+//   REVEAL    int game, int index                                                   ->  CHANGES
+//   FLAG      int game, int index                                                   ->  CHANGES
+//   CHORD     int game, int index                                                   ->  CHANGES
+//   RESET     int game, long seed                                                   ->  CHANGES
+//   CLOSE     int game                                                              (no reply)
+//
+// Replies:
+//   GAME      int game
+//   CHANGES   int game, int revealed, int flags remaining, byte status, int count, then count cells as
+//             (int index, byte cell). A reset sends no cells: everything is hidden again.
+//   ERROR     int game (0 if none), byte error
+//
+// A cell is sent as what a player would see: its number once revealed, or one of the codes from HIDDEN on.
+public final class Protocol {
+
+    private Protocol() {
+    }
+
+    // Request types.
+    public static final byte NEW_GAME = 1;
+    public static final byte REVEAL = 2;
+    public static final byte FLAG = 3;
+    public static final byte CHORD = 4;
+    public static final byte RESET = 5;
+    public static final byte CLOSE = 6;
+
+    // Reply types.
+    public static final byte GAME = 65;
+    public static final byte CHANGES = 66;
+    public static final byte ERROR = 127;
+
+    // NEW_GAME flags.
+    public static final byte SAFE_ZONE = 1;
+
+    // CHANGES status bits.
+    public static final byte OVER = 1;
+    public static final byte WON = 2;
+    public static final byte WAS_RESET = 4;
+
+    // Errors.
+    public static final byte UNKNOWN_GAME = 1;
+    public static final byte BAD_REQUEST = 2;
+    public static final byte TOO_MANY_GAMES = 3;
+    public static final byte BOARD_TOO_LARGE = 4;
+    public static final byte SERVER_FULL = 5;
+
+    // Cells other than revealed numbers (0 to 8).
+    public static final byte HIDDEN = 9;
+    public static final byte FLAGGED = 10;
+    public static final byte POSSIBLE = 11;
+    public static final byte MINE = 12;
+    public static final byte TRIPPED = 13;
+    public static final byte WRONG_FLAG = 14;
+
+    // Largest request, and bytes in a CHANGES reply before its cells and for each cell.
+    public static final int MAX_REQUEST = 4 + 1 + 4 * 3 + 8 + 1;
+    public static final int CHANGES_HEADER = 4 + 1 + 4 * 3 + 1 + 4;
+    public static final int CELL_BYTES = 5;
+
+    // What a player sees of a cell, the same as the board shows it.
+    public static byte cell(Game game, int index) {
+        State state = game.getState(index);
+
+        if (game.isGameOver() && !game.isWon()) {
+            if (state != State.FLAGGED && game.isMine(index)) {
+                return index == game.getTripped() ? TRIPPED : MINE;
+            } else if (state == State.FLAGGED && !game.isMine(index)) {
+                return WRONG_FLAG;
+            }
+        }
+
+        return switch (state) {
+            case REVEALED -> (byte) game.getAdjacentMines(index);
+            case FLAGGED -> FLAGGED;
+            case POSSIBLE -> POSSIBLE;
+            default -> HIDDEN;
+        };
+    }
+
+    // Write a CHANGES reply for the game's last action. out must have room for CHANGES_HEADER plus CELL_BYTES per
+    // changed cell. A move on a finished game changes nothing, so its reply lists no cells.
+    public static void putChanges(ByteBuffer out, int id, Game game) {
+        ChangeSet changes = game.getChanges();
+        int count = changes.isReset() ? 0 : changes.size();
+        byte status = (byte) ((changes.isGameOver() ? OVER : 0) | (changes.isWon() ? WON : 0) |
+                (changes.isReset() ? WAS_RESET : 0));
+
+        out.putInt(CHANGES_HEADER - 4 + count * CELL_BYTES).put(CHANGES).putInt(id)
+                .putInt(changes.getNumRevealed()).putInt(changes.getFlagsRemaining()).put(status).putInt(count);
+        for (int i = 0; i < count; i++) {
+            int index = changes.get(i);
+            out.putInt(index).put(cell(game, index));
+        }
+    }
+
+    public static void putGame(ByteBuffer out, int id) {
+        out.putInt(5).put(GAME).putInt(id);
+    }
+
+    public static void putError(ByteBuffer out, int id, byte error) {
+        out.putInt(6).put(ERROR).putInt(id).put(error);
+    }
+
+    // Requests, for clients.
+
+    public static void putNewGame(ByteBuffer out, int height, int width, int mines, long seed, boolean safe_zone) {
+        out.putInt(22).put(NEW_GAME).putInt(height).putInt(width).putInt(mines).putLong(seed)
+                .put(safe_zone ? SAFE_ZONE : 0);
+    }
+
+    // REVEAL, FLAG or CHORD.
+    public static void putMove(ByteBuffer out, byte type, int id, int index) {
+        out.putInt(9).put(type).putInt(id).putInt(index);
+    }
+
+    public static void putReset(ByteBuffer out, int id, long seed) {
+        out.putInt(13).put(RESET).putInt(id).putLong(seed);
+    }
+
+    public static void putClose(ByteBuffer out, int id) {
+        out.putInt(5).put(CLOSE).putInt(id);
+    }
+}
@@ -0,0 +1,111 @@
+package com.vandeldt.minesweeper.sim;
+
+import com.vandeldt.minesweeper.ChangeSet;
+import com.vandeldt.minesweeper.ChordResult;
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.State;
+import com.vandeldt.minesweeper.Topology;
+
+import java.util.random.RandomGenerator;
+
+// Plays the way most people do: flag the neighbours of a number once it has exactly that many unrevealed neighbours,
+// chord a number once getChordStatus says its flags are complete, and guess at random when neither applies. Only
+// numbers around the last move's changes are looked at, so a move doesn't scan the board.
+public class ChordStrategy implements Strategy {
+
+    private final RandomGenerator rnd;
+    private final Topology topology;
+    private final int[] neighbours;
+
+    // Revealed cells worth another look, as a stack. Each cell is on it at most once.
+    private final int[] stack;
+    private final long[] stacked;
+    private int num_stacked = 0;
+
+    public ChordStrategy(Game game, RandomGenerator rnd) {
+        this.rnd = rnd;
+        this.topology = game.getTopology();
+        this.neighbours = new int[topology.getMaxNeighbours()];
+        this.stack = new int[topology.size()];
+        this.stacked = new long[(topology.size() + 63) >>> 6];
+    }
+
+    public boolean move(Game game) {
+        follow(game);
+
+        while (num_stacked > 0) {
+            int index = pop();
+
+            int unrevealed = 0, flagged = 0, target = -1;
+            int count = topology.neighbours(index, neighbours);
+            for (int i = 0; i < count; i++) {
+                State state = game.getState(neighbours[i]);
+                if (state == State.DEFAULT) {
+                    target = neighbours[i];
+                    unrevealed++;
+                } else if (state == State.FLAGGED) {
+                    flagged++;
+                }
+            }
+
+            if (target < 0) {
+                continue;
+            }
+
+            // Every unrevealed neighbour must be a mine. Flag one, and come back for the rest.
+            if (unrevealed + flagged == game.getAdjacentMines(index)) {
+                game.flag(target);
+                push(index);
+                return false;
+            }
+
+            if (game.getChordStatus(index) == ChordResult.CHORDABLE) {
+                game.chord(index);
+                return false;
+            }
+        }
+
+        Guess.reveal(game, rnd);
+        return true;
+    }
+
+    // Queue up the numbers around whatever the last action changed.
+    private void follow(Game game) {
+        ChangeSet changes = game.getChanges();
+        if (changes.isReset()) {
+            while (num_stacked > 0) {
+                pop();
+            }
+            return;
+        }
+
+        for (int i = 0; i < changes.size(); i++) {
+            int index = changes.get(i);
+            pushNumber(game, index);
+
+            int count = topology.neighbours(index, neighbours);
+            for (int j = 0; j < count; j++) {
+                pushNumber(game, neighbours[j]);
+            }
+        }
+    }
+
+    private void pushNumber(Game game, int index) {
+        if (game.getState(index) == State.REVEALED && game.getAdjacentMines(index) > 0) {
+            push(index);
+        }
+    }
+
+    private void push(int index) {
+        if ((stacked[index >>> 6] & (1L << index)) == 0) {
+            stacked[index >>> 6] |= 1L << index;
+            stack[num_stacked++] = index;
+        }
+    }
+
+    private int pop() {
+        int index = stack[--num_stacked];
+        stacked[index >>> 6] &= ~(1L << index);
+        return index;
+    }
+}
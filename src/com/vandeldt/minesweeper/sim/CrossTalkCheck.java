@@ -0,0 +1,157 @@
+package com.vandeldt.minesweeper.sim;
+
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.SeedRandom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Checks that games running side by side don't affect each other. Plays a batch of seeded games one after another on
+// a single thread, reusing one game, then plays every one of them again on a thread pool, each thread taking turns a
+// move at a time between several games of its own. Each game must end the same both times: cells revealed, flags
+// left, won or lost, and a digest of every cell. Any game that doesn't is printed, and the exit status is 1.
+//
+//   java -cp out/production/Minesweeper com.vandeldt.minesweeper.sim.CrossTalkCheck [-n games] [-t threads]
+//        [-s strategy] [-seed seed] [-safe] E|M|H|HEIGHTxWIDTHxMINES
+public class CrossTalkCheck {
+
+    // Games each pool thread plays at once, a move at a time.
+    private static final int INTERLEAVED = 8;
+
+    public static void main(String[] args) throws Exception {
+        int games = 2000, threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        long seed = new SplittableRandom().nextLong();
+        String strategy = "chord", config = "M";
+        boolean safe_zone = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-n" -> games = Integer.parseInt(args[++i]);
+                case "-t" -> threads = Integer.parseInt(args[++i]);
+                case "-s" -> strategy = args[++i];
+                case "-seed" -> seed = Long.parseLong(args[++i]);
+                case "-safe" -> safe_zone = true;
+                default -> config = args[i];
+            }
+        }
+
+        int[] settings = Simulator.settings(config);
+        Strategy.Factory factory = Simulator.STRATEGIES.get(strategy);
+        if (settings == null || factory == null) {
+            System.err.println("Usage: CrossTalkCheck [-n games] [-t threads] [-s " +
+                    String.join("|", Simulator.STRATEGIES.keySet()) +
+                    "] [-seed seed] [-safe] E|M|H|HEIGHTxWIDTHxMINES");
+            System.exit(2);
+            return;
+        }
+
+        System.out.printf("%dx%d/%d, %s strategy%s, %d games, %d threads, seed %d%n", settings[0], settings[1],
+                settings[2], strategy, safe_zone ? ", safe zone" : "", games, threads, seed);
+
+        long[][] alone = playAlone(settings, safe_zone, factory, games, seed);
+        long[][] together = playTogether(settings, safe_zone, factory, games, seed, threads);
+
+        int mismatches = 0;
+        for (int number = 0; number < games; number++) {
+            if (!Arrays.equals(alone[number], together[number])) {
+                System.out.printf("game %d: alone %s, together %s%n", number, describe(alone[number]),
+                        describe(together[number]));
+                mismatches++;
+            }
+        }
+
+        if (mismatches > 0) {
+            System.out.printf("%d of %d games differ%n", mismatches, games);
+            System.exit(1);
+        }
+        System.out.printf("all %d games match%n", games);
+    }
+
+    // Every game in turn on this thread, on one game reset for each.
+    private static long[][] playAlone(int[] settings, boolean safe_zone, Strategy.Factory factory, int games,
+                                      long seed) {
+        SeedRandom seed_rnd = new SeedRandom(0), guess_rnd = new SeedRandom(0);
+        Game game = new Game(settings[0], settings[1], settings[2], seed, safe_zone);
+        Strategy strategy = factory.create(game, guess_rnd);
+
+        long[][] outcomes = new long[games][];
+        for (int number = 0; number < games; number++) {
+            long game_seed = Simulator.gameSeed(seed_rnd, seed, number);
+            game.reset(game_seed);
+            guess_rnd.setSeed(game_seed ^ Simulator.GUESS_SEED_MIX);
+
+            while (!game.isGameOver()) {
+                strategy.move(game);
+            }
+            outcomes[number] = outcome(game);
+        }
+        return outcomes;
+    }
+
+    // Every game on a new game of its own, in groups spread over a thread pool. Each thread moves the games of its
+    // group in turn, so games on the same thread and on other threads are all in progress at once.
+    private static long[][] playTogether(int[] settings, boolean safe_zone, Strategy.Factory factory, int games,
+                                         long seed, int threads) throws Exception {
+        long[][] outcomes = new long[games][];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> groups = new ArrayList<>();
+            for (int first = 0; first < games; first += INTERLEAVED) {
+                int from = first, to = Math.min(games, first + INTERLEAVED);
+                groups.add(pool.submit(() -> {
+                    SeedRandom seed_rnd = new SeedRandom(0);
+                    Game[] group = new Game[to - from];
+                    Strategy[] strategies = new Strategy[to - from];
+                    for (int i = 0; i < group.length; i++) {
+                        long game_seed = Simulator.gameSeed(seed_rnd, seed, from + i);
+                        group[i] = new Game(settings[0], settings[1], settings[2], game_seed, safe_zone);
+                        strategies[i] = factory.create(group[i], new SeedRandom(game_seed ^ Simulator.GUESS_SEED_MIX));
+                    }
+
+                    for (int playing = group.length; playing > 0; ) {
+                        playing = 0;
+                        for (int i = 0; i < group.length; i++) {
+                            if (!group[i].isGameOver()) {
+                                strategies[i].move(group[i]);
+                                playing++;
+                            }
+                        }
+                        Thread.yield();
+                    }
+
+                    for (int i = 0; i < group.length; i++) {
+                        outcomes[from + i] = outcome(group[i]);
+                    }
+                }));
+            }
+
+            for (Future<?> group : groups) {
+                group.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return outcomes;
+    }
+
+    // Cells revealed, flags left, whether it was won, and a digest of every cell's state, mine and count.
+    private static long[] outcome(Game game) {
+        long digest = 0;
+        for (int i = 0; i < game.getHeight() * game.getWidth(); i++) {
+            digest = digest * 31 + game.getState(i).ordinal() * 32 + (game.isMine(i) ? 16 : 0) +
+                    game.getAdjacentMines(i);
+        }
+        return new long[]{game.getNumRevealed(), game.getFlagsRemaining(), game.isWon() ? 1 : 0, digest};
+    }
+
+    private static String describe(long[] outcome) {
+        return String.format("revealed %d, flags left %d, %s, digest %x", outcome[0], outcome[1],
+                outcome[2] == 1 ? "won" : "lost", outcome[3]);
+    }
+}
@@ -0,0 +1,40 @@
+package com.vandeldt.minesweeper.sim;
+
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.State;
+
+import java.util.random.RandomGenerator;
+
+// Picking a cell at random when there's nothing better to do.
+final class Guess {
+
+    // Random picks to try before falling back to a scan, which only happens once the board is nearly done.
+    private static final int TRIES = 32;
+
+    private Guess() {}
+
+    // Reveal a random cell that is neither revealed nor flagged.
+    static void reveal(Game game, RandomGenerator rnd) {
+        int size = game.getHeight() * game.getWidth();
+
+        for (int i = 0; i < TRIES; i++) {
+            int index = rnd.nextInt(size);
+            if (game.getState(index) == State.DEFAULT) {
+                game.reveal(index);
+                return;
+            }
+        }
+
+        // Scan on from a random cell so the fallback isn't biased towards the top of the board.
+        int start = rnd.nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (game.getState(index) == State.DEFAULT) {
+                game.reveal(index);
+                return;
+            }
+        }
+
+        throw new IllegalStateException("No cell left to guess");
+    }
+}
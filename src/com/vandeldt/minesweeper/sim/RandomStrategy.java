@@ -0,0 +1,20 @@
+package com.vandeldt.minesweeper.sim;
+
+import com.vandeldt.minesweeper.Game;
+
+import java.util.random.RandomGenerator;
+
+// Clicks random unrevealed cells until the game ends. The first click is always safe, the rest are all guesses.
+public class RandomStrategy implements Strategy {
+
+    private final RandomGenerator rnd;
+
+    public RandomStrategy(Game game, RandomGenerator rnd) {
+        this.rnd = rnd;
+    }
+
+    public boolean move(Game game) {
+        Guess.reveal(game, rnd);
+        return true;
+    }
+}
@@ -0,0 +1,338 @@
+package com.vandeldt.minesweeper.sim;
+
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.Menu;
+import com.vandeldt.minesweeper.SeedRandom;
+import com.vandeldt.minesweeper.SquareTopology;
+import com.vandeldt.minesweeper.Topology;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Plays a batch of games headless with one strategy and reports how it did: win rate, cells revealed, guesses needed
+// and games per second. Games are spread over one worker thread per core; each worker has its own game, strategy and
+// random generators and reuses them for every game, so a game allocates nothing once warmed up. Each game's seed, and
+// the guesses made in it, follow from the batch seed and the game's number alone, so the same -seed plays the same
+// games whatever the number of threads. Every game can be written to a CSV file as it finishes (so in no fixed order
+// across threads), with the seed needed to replay it. Boards can be any shape Topology.forName knows (square by
+// default).
+//
+//   java -cp out/production/Minesweeper com.vandeldt.minesweeper.sim.Simulator [-n games] [-s strategy]
+//        [-t threads] [-o results.csv] [-seed seed] [-safe] [-shape topology] E|M|H|HEIGHTxWIDTHxMINES
+public class Simulator {
+
+    // Strategies by name.
+    public static final Map<String, Strategy.Factory> STRATEGIES = new LinkedHashMap<>() {{
+        put("random", RandomStrategy::new);
+        put("chord", ChordStrategy::new);
+        put("solver", SolverStrategy::new);
+    }};
+
+    // Games a worker claims at a time, and the games it plays before allocation counts as steady state.
+    private static final int BLOCK = 256;
+    private static final int WARMUP_GAMES = 1000;
+
+    // Step between the states of SeedRandom, and the change made to a game's seed to seed its guesses, so they don't
+    // follow the numbers the game places its mines with.
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    static final long GUESS_SEED_MIX = 0x5deece66dL;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Topology topology;
+    private final int mines;
+    private final boolean safe_zone;
+    private final Strategy.Factory factory;
+    private final long games;
+    private final Writer csv;
+    private final AtomicLong next_game = new AtomicLong();
+    private final AtomicLong games_done = new AtomicLong();
+
+    // Constructor
+    public Simulator(int height, int width, int mines, boolean safe_zone, Strategy.Factory factory, long games,
+                     Writer csv) {
+        this(new SquareTopology(height, width), mines, safe_zone, factory, games, csv);
+    }
+
+    public Simulator(Topology topology, int mines, boolean safe_zone, Strategy.Factory factory, long games,
+                     Writer csv) {
+        this.topology = topology;
+        this.mines = mines;
+        this.safe_zone = safe_zone;
+        this.factory = factory;
+        this.games = games;
+        this.csv = csv;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long games = 1_000_000, seed = new SplittableRandom().nextLong();
+        int threads = Runtime.getRuntime().availableProcessors();
+        String strategy = "solver", output = null, config = null, shape = "square";
+        boolean safe_zone = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-n" -> games = Long.parseLong(args[++i]);
+                case "-s" -> strategy = args[++i];
+                case "-t" -> threads = Integer.parseInt(args[++i]);
+                case "-o" -> output = args[++i];
+                case "-seed" -> seed = Long.parseLong(args[++i]);
+                case "-safe" -> safe_zone = true;
+                case "-shape" -> shape = args[++i];
+                default -> config = args[i];
+            }
+        }
+
+        int[] settings = settings(config);
+        if (settings == null) {
+            System.err.println("Usage: Simulator [-n games] [-s " + String.join("|", STRATEGIES.keySet()) +
+                    "] [-t threads] [-o results.csv] [-seed seed] [-safe] [-shape topology] E|M|H|HEIGHTxWIDTHxMINES");
+            System.exit(1);
+            return;
+        }
+
+        if (!STRATEGIES.containsKey(strategy)) {
+            System.err.println("Unknown strategy " + strategy + ", expected one of " + STRATEGIES.keySet());
+            System.exit(1);
+        }
+
+        Topology topology;
+        try {
+            topology = Topology.forName(shape, settings[0], settings[1]);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        Writer csv = output == null ? null : new BufferedWriter(new FileWriter(output), 1 << 20);
+        Simulator simulator = new Simulator(topology, settings[2], safe_zone, STRATEGIES.get(strategy), games, csv);
+
+        System.out.printf("%dx%d/%d %s, %s strategy%s, %d games on %d threads, seed %d%n", settings[0], settings[1],
+                settings[2], topology.getName(), strategy, safe_zone ? ", safe zone" : "", games, threads, seed);
+        simulator.run(threads, seed).print();
+    }
+
+    // Height, width and mines for a preset difficulty or HEIGHTxWIDTHxMINES, or null if config is neither.
+    static int[] settings(String config) {
+        if (config != null && Menu.DIFFICULTIES.containsKey(config)) {
+            Integer[] preset = Menu.DIFFICULTIES.get(config);
+            return new int[]{preset[0], preset[1], preset[2]};
+        } else if (config != null && config.matches("\\d+x\\d+x\\d+")) {
+            String[] parts = config.split("x");
+            return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+        }
+        return null;
+    }
+
+    // Play every game on the given number of threads and add up the results.
+    public Results run(int threads, long seed) throws Exception {
+        if (csv != null) {
+            csv.write("game,seed,won,revealed,guesses,moves\n");
+        }
+
+        Worker[] workers = new Worker[threads];
+        Thread[] thread_list = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(seed);
+            thread_list[i] = new Thread(workers[i], "simulator-" + i);
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : thread_list) {
+            thread.start();
+        }
+
+        // Report progress now and then while the workers get on with it.
+        for (Thread thread : thread_list) {
+            while (thread.isAlive()) {
+                thread.join(5000);
+                if (thread.isAlive()) {
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    System.err.printf("%d games, %.0f games/s%n", games_done.get(), games_done.get() / seconds);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (csv != null) {
+            csv.close();
+        }
+
+        Results results = new Results(elapsed);
+        for (Worker worker : workers) {
+            if (worker.failure != null) {
+                throw new IllegalStateException("Worker failed", worker.failure);
+            }
+            results.add(worker);
+        }
+        return results;
+    }
+
+    // The seed of a game in a batch: the number-th value of the batch seed's SplitMix64 sequence, worked out directly.
+    // rnd is only used as scratch.
+    static long gameSeed(SeedRandom rnd, long batch_seed, long number) {
+        rnd.setSeed(batch_seed + number * GOLDEN_GAMMA);
+        return rnd.nextLong();
+    }
+
+    // Plays games until the batch is done, keeping running totals and a buffer of CSV rows.
+    private class Worker implements Runnable {
+
+        private final long batch_seed;
+        private final SeedRandom seed_rnd = new SeedRandom(0), guess_rnd = new SeedRandom(0);
+        private final StringBuilder rows = new StringBuilder();
+        private char[] chars = new char[0];
+
+        private long played, won, revealed, guesses, moves;
+        private long steady_games, steady_bytes;
+        private Throwable failure;
+
+        Worker(long batch_seed) {
+            this.batch_seed = batch_seed;
+        }
+
+        public void run() {
+            try {
+                Game game = new Game(topology, mines, batch_seed, safe_zone);
+                Strategy strategy = factory.create(game, guess_rnd);
+                long steady_start = 0;
+
+                for (long first; (first = next_game.getAndAdd(BLOCK)) < games; ) {
+                    for (long number = first; number < Math.min(games, first + BLOCK); number++) {
+                        if (played == WARMUP_GAMES) {
+                            steady_start = THREADS.getCurrentThreadAllocatedBytes();
+                            steady_games = played;
+                        }
+
+                        play(game, strategy, number);
+                    }
+                    games_done.addAndGet(Math.min(games, first + BLOCK) - first);
+                }
+
+                if (played > WARMUP_GAMES) {
+                    steady_bytes = THREADS.getCurrentThreadAllocatedBytes() - steady_start;
+                    steady_games = played - steady_games;
+                } else {
+                    steady_games = 0;
+                }
+
+                flush(0);
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+        private void play(Game game, Strategy strategy, long number) throws IOException {
+            long seed = gameSeed(seed_rnd, batch_seed, number);
+            game.reset(seed);
+            guess_rnd.setSeed(seed ^ GUESS_SEED_MIX);
+
+            int game_guesses = 0, game_moves = 0;
+            while (!game.isGameOver()) {
+                if (strategy.move(game)) {
+                    game_guesses++;
+                }
+                game_moves++;
+            }
+
+            played++;
+            won += game.isWon() ? 1 : 0;
+            revealed += game.getNumRevealed();
+            guesses += game_guesses;
+            moves += game_moves;
+
+            if (csv != null) {
+                rows.append(number).append(',').append(seed).append(',').append(game.isWon() ? 1 : 0).append(',')
+                        .append(game.getNumRevealed()).append(',').append(game_guesses).append(',')
+                        .append(game_moves).append('\n');
+                flush(1 << 16);
+            }
+        }
+
+        // Hand the buffered rows to the shared writer once there are more than limit characters of them.
+        private void flush(int limit) throws IOException {
+            if (csv == null || rows.length() <= limit) {
+                return;
+            }
+
+            if (chars.length < rows.length()) {
+                chars = new char[rows.capacity()];
+            }
+            rows.getChars(0, rows.length(), chars, 0);
+
+            synchronized (csv) {
+                csv.write(chars, 0, rows.length());
+            }
+            rows.setLength(0);
+        }
+    }
+
+    // Totals over every worker.
+    public static class Results {
+
+        private final long elapsed;
+        private long played, won, revealed, guesses, moves;
+        private long steady_games, steady_bytes;
+
+        Results(long elapsed) {
+            this.elapsed = elapsed;
+        }
+
+        void add(Worker worker) {
+            played += worker.played;
+            won += worker.won;
+            revealed += worker.revealed;
+            guesses += worker.guesses;
+            moves += worker.moves;
+            steady_games += worker.steady_games;
+            steady_bytes += worker.steady_bytes;
+        }
+
+        public void print() {
+            System.out.printf("games %d, won %d (%.3f%%)%n", played, won, 100.0 * won / Math.max(1, played));
+            System.out.printf("revealed %.2f, guesses %.3f, moves %.2f per game%n", revealed / (double) played,
+                    guesses / (double) played, moves / (double) played);
+            System.out.printf("%.0f games/s over %.2f s", played / (elapsed / 1e9), elapsed / 1e9);
+            if (steady_games > 0) {
+                System.out.printf(", %.1f bytes allocated per game after warm-up",
+                        steady_bytes / (double) steady_games);
+            }
+            System.out.println();
+        }
+
+        // Getters
+
+        public long getPlayed() {
+            return played;
+        }
+
+        public long getWon() {
+            return won;
+        }
+
+        public double getWinRate() {
+            return won / (double) Math.max(1, played);
+        }
+
+        public double getAverageRevealed() {
+            return revealed / (double) Math.max(1, played);
+        }
+
+        public double getAverageGuesses() {
+            return guesses / (double) Math.max(1, played);
+        }
+
+        public double getGamesPerSecond() {
+            return played / (elapsed / 1e9);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.vandeldt.minesweeper.sim;
+
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.solver.Solver;
+
+import java.util.random.RandomGenerator;
+
+// Reveals the cells the constraint solver proves safe, and guesses at random when it can't find any. Flags aren't
+// needed to win, so known mines are left alone.
+public class SolverStrategy implements Strategy {
+
+    private final Solver solver;
+    private final RandomGenerator rnd;
+
+    public SolverStrategy(Game game, RandomGenerator rnd) {
+        this.solver = new Solver(game);
+        this.rnd = rnd;
+    }
+
+    public boolean move(Game game) {
+        solver.update(game.getChanges());
+
+        int safe = solver.nextSafe();
+        if (safe >= 0) {
+            game.reveal(safe);
+            return false;
+        }
+
+        Guess.reveal(game, rnd);
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package com.vandeldt.minesweeper.sim;
+
+import com.vandeldt.minesweeper.Game;
+
+import java.util.random.RandomGenerator;
+
+// A way of playing, for the simulator. Each worker thread makes its own strategy for its own game and keeps it for
+// every game it plays, so strategies can hold on to buffers between games. The game has always just been reset or had
+// the strategy's last move applied, so getChanges() tells it what happened.
+public interface Strategy {
+
+    // Makes a strategy for a game, with random numbers from the worker's own generator. The simulator reseeds that for
+    // every game, so the guesses in a game follow from its seed alone.
+    interface Factory {
+        Strategy create(Game game, RandomGenerator rnd);
+    }
+
+    // Make one move on a game that isn't over. Returns whether it was a guess rather than a move known to be safe.
+    boolean move(Game game);
+}
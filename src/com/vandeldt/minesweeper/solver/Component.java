@@ -0,0 +1,291 @@
+package com.vandeldt.minesweeper.solver;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+// A group of frontier cells joined by shared constraints, which can be solved apart from every other group. Solving
+// counts its solutions by the number of mines they use, and for each cell how many of those solutions make it a mine.
+final class Component extends RecursiveAction {
+
+    // Components with more cells than this aren't enumerated at all.
+    static final int MAX_EXACT_CELLS = 400;
+
+    // Input: board indices of the cells, and for each constraint the (local) cells it covers and the mines among them.
+    final int[] cells;
+    final int[][] constraints;
+    final int[] values;
+    final Signature signature;
+    private final double density;
+    private final long deadline;
+
+    // Output: counts[k] solutions use offset + k mines, and in cell_counts[v * counts.length + k] of them cell v is a
+    // mine. Both are scaled so the largest count is 1.
+    int offset;
+    double[] counts;
+    double[] cell_counts;
+    boolean exact;
+
+    // Search state. Cells are bits in assigned (decided) and mine (decided as a mine). Constraints waiting to be
+    // checked sit in a ring buffer, each at most once.
+    private int size, words;
+    private long[][] masks;
+    private int[][] cell_constraints;
+    private long[] assigned, mine;
+    private int[] order, trail, queue;
+    private boolean[] in_queue;
+    private int trail_size, queue_head, queue_size;
+    private long nodes;
+    private boolean timed_out;
+
+    // Constructor
+    Component(int[] cells, int[][] constraints, int[] values, Signature signature, double density, long deadline) {
+        this.cells = cells;
+        this.constraints = constraints;
+        this.values = values;
+        this.signature = signature;
+        this.density = density;
+        this.deadline = deadline;
+    }
+
+    @Override
+    protected void compute() {
+        size = cells.length;
+        exact = size <= MAX_EXACT_CELLS && enumerate();
+        if (!exact) {
+            approximate();
+        }
+    }
+
+    // Exact count by depth-first search over the cells, propagating after each guess. Gives up (returning false) if
+    // the deadline passes first.
+    private boolean enumerate() {
+        words = (size + 63) >>> 6;
+        masks = new long[constraints.length][words];
+        assigned = new long[words];
+        mine = new long[words];
+        trail = new int[size];
+        queue = new int[constraints.length];
+        in_queue = new boolean[constraints.length];
+
+        int[] degree = new int[size];
+        for (int c = 0; c < constraints.length; c++) {
+            for (int v : constraints[c]) {
+                masks[c][v >>> 6] |= 1L << v;
+                degree[v]++;
+            }
+        }
+
+        cell_constraints = new int[size][];
+        for (int v = 0; v < size; v++) {
+            cell_constraints[v] = new int[degree[v]];
+            degree[v] = 0;
+        }
+        for (int c = 0; c < constraints.length; c++) {
+            for (int v : constraints[c]) {
+                cell_constraints[v][degree[v]++] = c;
+            }
+        }
+
+        order = searchOrder();
+        counts = new double[size + 1];
+        cell_counts = new double[size * (size + 1)];
+
+        search(0);
+        if (timed_out) {
+            return false;
+        }
+
+        // Scale down so huge counts from big components can still be combined without overflowing.
+        double max = 0;
+        for (double count : counts) {
+            max = Math.max(max, count);
+        }
+        for (int k = 0; k < counts.length; k++) {
+            counts[k] /= max;
+        }
+        for (int i = 0; i < cell_counts.length; i++) {
+            cell_counts[i] /= max;
+        }
+
+        return true;
+    }
+
+    // Visit cells breadth first through their constraints, so each guess lands next to earlier ones and contradictions
+    // show up early.
+    private int[] searchOrder() {
+        int[] order = new int[size];
+        boolean[] seen = new boolean[size];
+        int head = 0, tail = 0;
+
+        for (int start = 0; start < size; start++) {
+            if (seen[start]) {
+                continue;
+            }
+            seen[start] = true;
+            order[tail++] = start;
+
+            while (head < tail) {
+                int v = order[head++];
+                for (int c : cell_constraints[v]) {
+                    for (int u : constraints[c]) {
+                        if (!seen[u]) {
+                            seen[u] = true;
+                            order[tail++] = u;
+                        }
+                    }
+                }
+            }
+        }
+
+        return order;
+    }
+
+    private void search(int position) {
+        if ((++nodes & 1023) == 0 && System.nanoTime() > deadline) {
+            timed_out = true;
+        }
+        if (timed_out) {
+            return;
+        }
+
+        while (position < size && isAssigned(order[position])) {
+            position++;
+        }
+
+        if (position == size) {
+            record();
+            return;
+        }
+
+        int v = order[position];
+        int mark = trail_size;
+
+        for (int value = 0; value <= 1; value++) {
+            assign(v, value == 1);
+            if (propagate()) {
+                search(position + 1);
+            }
+            undo(mark);
+        }
+    }
+
+    // Check every queued constraint, forcing the rest of its cells once it is satisfied (all safe) or can only just be
+    // satisfied (all mines). Returns false on a contradiction.
+    private boolean propagate() {
+        boolean consistent = true;
+
+        // Forcing cells queues more constraints (again if need be), which this same loop then checks.
+        while (queue_size > 0) {
+            int c = queue[queue_head];
+            queue_head = (queue_head + 1) % queue.length;
+            queue_size--;
+            in_queue[c] = false;
+            if (!consistent) {
+                continue;
+            }
+
+            int mines = 0, open = 0;
+            for (int w = 0; w < words; w++) {
+                mines += Long.bitCount(masks[c][w] & mine[w]);
+                open += Long.bitCount(masks[c][w] & ~assigned[w]);
+            }
+
+            if (mines > values[c] || mines + open < values[c]) {
+                consistent = false;
+            } else if (open > 0 && (mines == values[c] || mines + open == values[c])) {
+                boolean as_mine = mines != values[c];
+                for (int w = 0; w < words; w++) {
+                    for (long bits = masks[c][w] & ~assigned[w]; bits != 0; bits &= bits - 1) {
+                        assign((w << 6) + Long.numberOfTrailingZeros(bits), as_mine);
+                    }
+                }
+            }
+        }
+
+        return consistent;
+    }
+
+    // Decide a cell and queue its constraints to be checked.
+    private void assign(int v, boolean as_mine) {
+        assigned[v >>> 6] |= 1L << v;
+        if (as_mine) {
+            mine[v >>> 6] |= 1L << v;
+        }
+        trail[trail_size++] = v;
+
+        for (int c : cell_constraints[v]) {
+            if (!in_queue[c]) {
+                in_queue[c] = true;
+                queue[(queue_head + queue_size++) % queue.length] = c;
+            }
+        }
+    }
+
+    // Take back every decision made since the trail was at mark.
+    private void undo(int mark) {
+        while (trail_size > mark) {
+            int v = trail[--trail_size];
+            assigned[v >>> 6] &= ~(1L << v);
+            mine[v >>> 6] &= ~(1L << v);
+        }
+    }
+
+    private boolean isAssigned(int v) {
+        return (assigned[v >>> 6] & (1L << v)) != 0;
+    }
+
+    // Count a complete solution.
+    private void record() {
+        int k = 0;
+        for (long word : mine) {
+            k += Long.bitCount(word);
+        }
+
+        counts[k]++;
+        for (int w = 0; w < words; w++) {
+            for (long bits = mine[w]; bits != 0; bits &= bits - 1) {
+                cell_counts[((w << 6) + Long.numberOfTrailingZeros(bits)) * (size + 1) + k]++;
+            }
+        }
+    }
+
+    // Fallback for components too big or slow to enumerate: starting from the board's density, repeatedly scale each
+    // cell's probability towards what its constraints need, then treat the component as always holding the expected
+    // number of mines.
+    private void approximate() {
+        double[] p = new double[size];
+        double[] factor = new double[size];
+        int[] degree = new int[size];
+        Arrays.fill(p, density);
+
+        for (int round = 0; round < 20; round++) {
+            Arrays.fill(factor, 0);
+            Arrays.fill(degree, 0);
+
+            for (int c = 0; c < constraints.length; c++) {
+                double sum = 0;
+                for (int v : constraints[c]) {
+                    sum += p[v];
+                }
+                double scale = sum > 0 ? values[c] / sum : 1;
+                for (int v : constraints[c]) {
+                    factor[v] += Math.log(Math.max(scale, 1e-9));
+                    degree[v]++;
+                }
+            }
+
+            for (int v = 0; v < size; v++) {
+                p[v] = Math.min(1, p[v] * Math.exp(factor[v] / Math.max(1, degree[v])));
+            }
+        }
+
+        double expected = 0;
+        for (double probability : p) {
+            expected += probability;
+        }
+
+        offset = (int) Math.min(size, Math.round(expected));
+        counts = new double[] {1};
+        cell_counts = p;
+    }
+}
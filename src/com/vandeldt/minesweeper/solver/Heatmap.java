@@ -0,0 +1,43 @@
+package com.vandeldt.minesweeper.solver;
+
+import java.util.Arrays;
+
+// A snapshot of mine probabilities that stays valid while the game moves on, e.g. to draw on another thread. Cells on
+// the frontier (and cells the solver is sure of) have their own value, every other unrevealed cell shares one. The
+// cells are kept sorted so a value can be looked up by binary search.
+public final class Heatmap {
+
+    private final int[] cells;
+    private final float[] values;
+    private final float other;
+
+    Heatmap(int[] cells, float[] values, float other) {
+        this.cells = cells;
+        this.values = values;
+        this.other = other;
+    }
+
+    // Chance that an unrevealed cell is a mine (NaN if unknown).
+    public float get(int index) {
+        int i = Arrays.binarySearch(cells, index);
+        return i >= 0 ? values[i] : other;
+    }
+
+    // Number of cells with their own value.
+    public int size() {
+        return cells.length;
+    }
+
+    public int getCell(int i) {
+        return cells[i];
+    }
+
+    public float getValue(int i) {
+        return values[i];
+    }
+
+    // Probability for every other unrevealed cell (NaN if there are none).
+    public float getOther() {
+        return other;
+    }
+}
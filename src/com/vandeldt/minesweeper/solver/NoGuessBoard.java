@@ -0,0 +1,21 @@
+package com.vandeldt.minesweeper.solver;
+
+// A board that can be cleared without guessing: a safe zone game with this seed, opened at the start cell.
+public final class NoGuessBoard {
+
+    private final long seed;
+    private final int start;
+
+    public NoGuessBoard(long seed, int start) {
+        this.seed = seed;
+        this.start = start;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getStart() {
+        return start;
+    }
+}
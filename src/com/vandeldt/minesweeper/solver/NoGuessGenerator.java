@@ -0,0 +1,197 @@
+package com.vandeldt.minesweeper.solver;
+
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.Menu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Finds boards that the solver can clear from the start cell without ever guessing. Candidates are random safe zone
+// boards with a random start cell; one worker per core plays them out with its own game and solver, and whichever finds
+// a board first wins. The time each board took is kept so the latency can be reported.
+public class NoGuessGenerator {
+
+    // Candidates to try across all workers, and time to spend, before giving up on a configuration.
+    private static final long MAX_ATTEMPTS = 200_000;
+    private static final long MAX_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    // Recent generation times kept for percentiles.
+    private static final int MAX_SAMPLES = 1024;
+
+    // The densest and largest boards offered without guessing. Past about a fifth mines (Hard is 20.6%) boards the
+    // solver can clear get rare fast, and on big boards each candidate takes long to play out, so generation runs out
+    // of attempts or time instead of finding one.
+    public static final double MAX_DENSITY = 0.21;
+    public static final int MAX_CELLS = 200 * 200;
+
+    private final int board_height, board_width, num_mines;
+    private final int workers;
+    private final ExecutorService executor;
+    private final SplittableRandom rnd;
+
+    // Each worker thread's solver and the game it watches, reused for every candidate the thread tries.
+    private final ThreadLocal<Solver> solvers;
+
+    private final long[] samples = new long[MAX_SAMPLES];
+    private long num_samples = 0;
+    private final AtomicLong total_attempts = new AtomicLong();
+    private long total_boards = 0;
+
+    // Constructor
+    public NoGuessGenerator(int height, int width, int mines, long seed) {
+        this.board_height = height;
+        this.board_width = width;
+        this.num_mines = mines;
+        this.rnd = new SplittableRandom(seed);
+        this.workers = Runtime.getRuntime().availableProcessors();
+
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "no-guess-" + height + "x" + width + "x" + mines);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.solvers = ThreadLocal.withInitial(() -> new Solver(new Game(height, width, mines, 0, true)));
+    }
+
+    // Whether boards of a configuration can be generated in good time. The start cell and its neighbours must be free
+    // of mines.
+    public static boolean canGenerate(int height, int width, int mines) {
+        long cells = (long) height * width;
+        return cells <= MAX_CELLS && mines <= cells - 9 && mines <= cells * MAX_DENSITY;
+    }
+
+    // Find a board, in parallel, returning the first one any worker finds. Throws IllegalStateException if there
+    // doesn't seem to be one (the board is too full).
+    public NoGuessBoard generate() {
+        long start = System.nanoTime();
+        AtomicLong attempts = new AtomicLong();
+
+        List<Callable<NoGuessBoard>> searches = new ArrayList<>(workers);
+        synchronized (rnd) {
+            for (int i = 0; i < workers; i++) {
+                SplittableRandom worker_rnd = rnd.split();
+                searches.add(() -> search(worker_rnd, attempts, start + MAX_NANOS));
+            }
+        }
+
+        NoGuessBoard board;
+        try {
+            board = executor.invokeAny(searches);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating a board", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("No board without guessing found in " + attempts.get() + " attempts",
+                    e.getCause());
+        } finally {
+            total_attempts.addAndGet(attempts.get());
+        }
+
+        record(System.nanoTime() - start);
+        return board;
+    }
+
+    // Try candidates until one works, another worker finds one (and we're interrupted) or the attempts or time run out.
+    private NoGuessBoard search(SplittableRandom rnd, AtomicLong attempts, long deadline) {
+        Solver solver = solvers.get();
+        Game game = solver.getGame();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            if (attempts.incrementAndGet() > MAX_ATTEMPTS || System.nanoTime() > deadline) {
+                throw new IllegalStateException("Out of attempts");
+            }
+
+            long seed = rnd.nextLong();
+            int start = rnd.nextInt(board_height * board_width);
+            if (isSolvable(game, solver, seed, start)) {
+                return new NoGuessBoard(seed, start);
+            }
+        }
+
+        throw new IllegalStateException("Interrupted");
+    }
+
+    // Play a board out using only cells the solver proves safe.
+    static boolean isSolvable(Game game, Solver solver, long seed, int start) {
+        game.reset(seed);
+        solver.update(game.getChanges());
+        game.reveal(start);
+
+        while (!game.isGameOver()) {
+            solver.update(game.getChanges());
+
+            int safe = solver.nextSafe();
+            if (safe < 0) {
+                return false;
+            }
+            game.reveal(safe);
+        }
+
+        return game.isWon();
+    }
+
+    private synchronized void record(long nanos) {
+        samples[(int) (num_samples++ % MAX_SAMPLES)] = nanos;
+        total_boards++;
+    }
+
+    // Generation time at a percentile (0 to 100) over recent boards, in milliseconds.
+    public synchronized double getLatencyPercentile(double percentile) {
+        int count = (int) Math.min(num_samples, MAX_SAMPLES);
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.min(count - 1, Math.ceil(percentile / 100 * count) - 1);
+        return sorted[Math.max(0, rank)] / 1e6;
+    }
+
+    // Summary of generation so far.
+    public synchronized String report() {
+        return String.format("%dx%d/%d: %d boards, %.1f attempts each, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, " +
+                        "max %.2f ms", board_height, board_width, num_mines, total_boards,
+                total_attempts.get() / (double) Math.max(1, total_boards), getLatencyPercentile(50),
+                getLatencyPercentile(90), getLatencyPercentile(99), getLatencyPercentile(100));
+    }
+
+    // Stop the worker threads.
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Generate boards for each configuration given (E, M, H or HEIGHTxWIDTHxMINES) and print the latency.
+    public static void main(String[] args) {
+        int count = Integer.getInteger("boards", 200);
+
+        for (String config : args.length > 0 ? args : new String[]{"E", "M", "H"}) {
+            int[] settings = parse(config);
+            NoGuessGenerator generator = new NoGuessGenerator(settings[0], settings[1], settings[2],
+                    new SplittableRandom().nextLong());
+            for (int i = 0; i < count; i++) {
+                generator.generate();
+            }
+            System.out.println(generator.report());
+            generator.shutdown();
+        }
+    }
+
+    private static int[] parse(String config) {
+        Integer[] preset = Menu.DIFFICULTIES.get(config);
+        if (preset != null) {
+            return new int[]{preset[0], preset[1], preset[2]};
+        }
+
+        String[] parts = config.split("x");
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+    }
+}
@@ -0,0 +1,86 @@
+package com.vandeldt.minesweeper.solver;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A few boards without guessing generated ahead of time for one configuration, so a new game can start straight away.
+// A background thread tops the pool up whenever a board is taken. There is one pool per configuration, shared by every
+// window using it.
+public class NoGuessPool {
+
+    // Boards kept ready per configuration.
+    private static final int CAPACITY = 8;
+
+    private static final Map<String, NoGuessPool> POOLS = new ConcurrentHashMap<>();
+
+    private final NoGuessGenerator generator;
+    private final BlockingQueue<NoGuessBoard> boards = new ArrayBlockingQueue<>(CAPACITY);
+
+    // Why generating failed, once it has. Every later take() then fails straight away instead of trying again on the
+    // caller's thread for up to the generator's time limit each time.
+    private volatile IllegalStateException failure;
+
+    // The pool for a configuration, created and started filling on first use.
+    public static NoGuessPool forConfig(int height, int width, int mines) {
+        return POOLS.computeIfAbsent(height + "x" + width + "x" + mines, key -> new NoGuessPool(height, width, mines));
+    }
+
+    private NoGuessPool(int height, int width, int mines) {
+        this.generator = new NoGuessGenerator(height, width, mines, new SplittableRandom().nextLong());
+
+        // Fill in the background until full, then wait for boards to be taken. Gives up for good if the configuration
+        // is too full to generate for, leaving take() to report it.
+        Thread filler = new Thread(() -> {
+            try {
+                while (failure == null) {
+                    boards.put(generator.generate());
+                }
+            } catch (InterruptedException e) {
+                // Nothing more to do.
+            } catch (IllegalStateException e) {
+                fail(e);
+            }
+        }, "no-guess-pool-" + height + "x" + width + "x" + mines);
+        filler.setDaemon(true);
+        filler.setPriority(Thread.MIN_PRIORITY);
+        filler.start();
+    }
+
+    // A ready board if there is one, or else a freshly generated one. Throws IllegalStateException if there isn't one
+    // and generating has already failed, or fails now.
+    public NoGuessBoard take() {
+        NoGuessBoard board = boards.poll();
+        if (board != null) {
+            return board;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        try {
+            return generator.generate();
+        } catch (IllegalStateException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    // Remember a failure, unless it was only the thread being interrupted.
+    private void fail(IllegalStateException e) {
+        if (!Thread.currentThread().isInterrupted()) {
+            failure = e;
+        }
+    }
+
+    // Number of boards ready to go.
+    public int available() {
+        return boards.size();
+    }
+
+    public NoGuessGenerator getGenerator() {
+        return generator;
+    }
+}
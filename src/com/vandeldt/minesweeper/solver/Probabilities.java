@@ -0,0 +1,500 @@
+package com.vandeldt.minesweeper.solver;
+
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.State;
+import com.vandeldt.minesweeper.Topology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+// Works out the chance of each unrevealed cell being a mine from the revealed numbers and the total number of mines.
+// The frontier (unrevealed cells next to a number) is split into components that share no constraints; each is counted
+// on its own, in parallel, and the counts are combined with the number of ways to place the leftover mines among the
+// cells that no number touches. Components that can't be counted within the time budget are approximated instead.
+public class Probabilities {
+
+    // Above roughly this many steps, combining components exactly gives way to treating them as independent, which is
+    // what exact combination tends to anyway when the unconstrained area is large.
+    private static final long COMBINE_LIMIT = 50_000_000L;
+
+    private final Game game;
+    private final Topology topology;
+    private final int board_height, board_width;
+
+    // Scratch space indexed by cell, and the frontier found in the last run.
+    private final int[] variable;
+    private final int[] parent;
+    private final int[] frontier;
+    private final int[] constraint_cells;
+    private final int[] component_of;
+    private final int[] neighbours;
+    private int num_frontier = 0, num_constraints = 0;
+
+    // Results: every cell with its own value is listed, any other unrevealed cell has the shared value.
+    private final float[] probability;
+    private final int[] listed;
+    private int num_listed = 0;
+    private float other = Float.NaN;
+    private boolean exact = true;
+
+    // Components solved exactly last time, to be reused if they haven't changed.
+    private Map<Signature, Component> cache = new HashMap<>();
+
+    // Constructor
+    public Probabilities(Game game) {
+        this.game = game;
+        this.topology = game.getTopology();
+        this.board_height = game.getHeight();
+        this.board_width = game.getWidth();
+
+        int size = board_height * board_width;
+        this.variable = new int[size];
+        this.parent = new int[size];
+        this.frontier = new int[size];
+        this.constraint_cells = new int[size];
+        this.component_of = new int[size];
+        this.neighbours = new int[topology.getMaxNeighbours()];
+        this.probability = new float[size];
+        this.listed = new int[size];
+
+        Arrays.fill(variable, -1);
+        Arrays.fill(probability, Float.NaN);
+    }
+
+    // Recalculate for the game as it is now. Cells the solver (if any) is already sure of are taken as known. Must run
+    // on the thread that owns the game; only the counting itself is spread over the common fork-join pool.
+    public void compute(Solver solver, long budget_millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget_millis);
+
+        for (int i = 0; i < num_listed; i++) {
+            probability[listed[i]] = Float.NaN;
+        }
+        num_listed = 0;
+
+        // Find the constraints and the frontier cells they cover, joining cells that share a constraint.
+        int mines_left = game.getNumMines();
+        int unknown = 0;
+        for (int i = 0; i < board_height * board_width; i++) {
+            if (game.getState(i) != State.REVEALED) {
+                if (solver != null && solver.isKnownMine(i)) {
+                    mines_left--;
+                    list(i, 1);
+                } else if (solver != null && solver.isKnownSafe(i)) {
+                    list(i, 0);
+                } else {
+                    unknown++;
+                }
+            } else if (game.getAdjacentMines(i) > 0) {
+                addConstraint(i, solver);
+            }
+        }
+
+        List<Component> components = group(solver, mines_left / (double) Math.max(1, unknown), deadline);
+
+        List<Component> unsolved = new ArrayList<>();
+        Map<Signature, Component> solved = new HashMap<>();
+        for (int c = 0; c < components.size(); c++) {
+            Component cached = cache.get(components.get(c).signature);
+            if (cached != null) {
+                components.set(c, cached);
+            } else {
+                unsolved.add(components.get(c));
+            }
+        }
+        ForkJoinTask.invokeAll(unsolved);
+
+        exact = true;
+        for (Component component : components) {
+            exact &= component.exact;
+            if (component.exact) {
+                solved.put(component.signature, component);
+            }
+        }
+        cache = solved;
+
+        combine(components, mines_left, unknown - num_frontier);
+
+        // Clear the scratch space for next time.
+        for (int v = 0; v < num_frontier; v++) {
+            variable[frontier[v]] = -1;
+        }
+        num_frontier = 0;
+        num_constraints = 0;
+    }
+
+    // Record a revealed number with unknown neighbours.
+    private void addConstraint(int index, Solver solver) {
+        int count = topology.neighbours(index, neighbours);
+        int first = -1;
+
+        for (int i = 0; i < count; i++) {
+            int neighbour = neighbours[i];
+            if (!isUnknown(neighbour, solver)) {
+                continue;
+            }
+
+            if (variable[neighbour] < 0) {
+                variable[neighbour] = num_frontier;
+                parent[num_frontier] = num_frontier;
+                frontier[num_frontier++] = neighbour;
+            }
+
+            if (first < 0) {
+                first = variable[neighbour];
+            } else {
+                union(first, variable[neighbour]);
+            }
+        }
+
+        if (first >= 0) {
+            constraint_cells[num_constraints++] = index;
+        }
+    }
+
+    private boolean isUnknown(int index, Solver solver) {
+        return game.getState(index) != State.REVEALED &&
+                (solver == null || (!solver.isKnownMine(index) && !solver.isKnownSafe(index)));
+    }
+
+    private int find(int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    private void union(int a, int b) {
+        parent[find(a)] = find(b);
+    }
+
+    // Split the frontier into components, with each constraint rewritten in terms of its component's cells.
+    private List<Component> group(Solver solver, double density, long deadline) {
+        List<Component> components = new ArrayList<>();
+
+        // Number the components and give each cell its place within its own.
+        int[] sizes = new int[num_frontier];
+        for (int v = 0; v < num_frontier; v++) {
+            component_of[v] = -1;
+        }
+        for (int v = 0; v < num_frontier; v++) {
+            int root = find(v);
+            if (component_of[root] < 0) {
+                component_of[root] = components.size();
+                components.add(null);
+            }
+            parent[v] = root;
+        }
+
+        int[] local = new int[num_frontier];
+        for (int v = 0; v < num_frontier; v++) {
+            int c = component_of[parent[v]];
+            local[v] = sizes[c]++;
+        }
+
+        int[][] cells = new int[components.size()][];
+        int[] constraint_counts = new int[components.size()];
+        for (int c = 0; c < cells.length; c++) {
+            cells[c] = new int[sizes[c]];
+        }
+        for (int v = 0; v < num_frontier; v++) {
+            cells[component_of[parent[v]]][local[v]] = frontier[v];
+        }
+
+        int[] owner = new int[num_constraints];
+        int[] scratch = new int[topology.getMaxNeighbours()];
+        for (int k = 0; k < num_constraints; k++) {
+            collect(constraint_cells[k], solver, scratch);
+            owner[k] = component_of[parent[variable[scratch[0]]]];
+            constraint_counts[owner[k]]++;
+        }
+
+        int[][][] constraints = new int[cells.length][][];
+        int[][] values = new int[cells.length][];
+        int[][] signatures = new int[cells.length][];
+        for (int c = 0; c < cells.length; c++) {
+            constraints[c] = new int[constraint_counts[c]][];
+            values[c] = new int[constraint_counts[c]];
+            signatures[c] = Arrays.copyOf(cells[c], cells[c].length + 2 * constraint_counts[c]);
+            constraint_counts[c] = 0;
+        }
+
+        for (int k = 0; k < num_constraints; k++) {
+            int index = constraint_cells[k];
+            int count = collect(index, solver, scratch);
+            int c = owner[k], position = constraint_counts[c]++;
+
+            constraints[c][position] = new int[count];
+            for (int i = 0; i < count; i++) {
+                constraints[c][position][i] = local[variable[scratch[i]]];
+            }
+            values[c][position] = game.getAdjacentMines(index) - knownMinesAround(index, solver);
+
+            signatures[c][cells[c].length + 2 * position] = index;
+            signatures[c][cells[c].length + 2 * position + 1] = values[c][position];
+        }
+
+        for (int c = 0; c < cells.length; c++) {
+            components.set(c, new Component(cells[c], constraints[c], values[c], new Signature(signatures[c]), density,
+                    deadline));
+        }
+
+        return components;
+    }
+
+    // Fill cells with the unknown neighbours of a revealed cell, returning how many there are.
+    private int collect(int index, Solver solver, int[] cells) {
+        int num_neighbours = topology.neighbours(index, neighbours);
+        int count = 0;
+
+        for (int i = 0; i < num_neighbours; i++) {
+            if (isUnknown(neighbours[i], solver)) {
+                cells[count++] = neighbours[i];
+            }
+        }
+
+        return count;
+    }
+
+    private int knownMinesAround(int index, Solver solver) {
+        if (solver == null) {
+            return 0;
+        }
+
+        int num_neighbours = topology.neighbours(index, neighbours);
+        int count = 0;
+
+        for (int i = 0; i < num_neighbours; i++) {
+            if (solver.isKnownMine(neighbours[i]) && game.getState(neighbours[i]) != State.REVEALED) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // Turn the component counts into probabilities. Weighting a component's solutions with k mines by the ways to put
+    // the remaining mines on the unconstrained cells needs the combined counts of every other component, built here
+    // from prefix and suffix products.
+    private void combine(List<Component> components, int mines_left, int unconstrained) {
+        int m = components.size();
+        long range = 1;
+        for (Component component : components) {
+            range += component.counts.length - 1;
+        }
+
+        if (m * range * range > COMBINE_LIMIT) {
+            exact = false;
+            combineIndependent(components, mines_left, unconstrained);
+            return;
+        }
+
+        double[][] prefix = new double[m + 1][];
+        int[] prefix_offset = new int[m + 1];
+        prefix[0] = new double[] {1};
+        for (int c = 0; c < m; c++) {
+            prefix[c + 1] = convolve(prefix[c], components.get(c).counts);
+            prefix_offset[c + 1] = prefix_offset[c] + components.get(c).offset;
+        }
+
+        double[][] suffix = new double[m + 1][];
+        int[] suffix_offset = new int[m + 1];
+        suffix[m] = new double[] {1};
+        for (int c = m - 1; c >= 0; c--) {
+            suffix[c] = convolve(suffix[c + 1], components.get(c).counts);
+            suffix_offset[c] = suffix_offset[c + 1] + components.get(c).offset;
+        }
+
+        // Relative number of ways to place x mines on the unconstrained cells, for every x that could be left over.
+        int min_total = prefix_offset[m], max_total = prefix_offset[m] + prefix[m].length - 1;
+        int low = Math.max(0, mines_left - max_total), high = Math.min(unconstrained, mines_left - min_total);
+        double[] ways = binomials(unconstrained, low, high);
+
+        for (int c = 0; c < m; c++) {
+            Component component = components.get(c);
+            double[] rest = convolve(prefix[c], suffix[c + 1]);
+            int rest_offset = prefix_offset[c] + suffix_offset[c + 1];
+
+            // weight[k]: ways to complete a solution of this component with offset + k mines.
+            int length = component.counts.length;
+            double[] weight = new double[length];
+            for (int k = 0; k < length; k++) {
+                for (int r = 0; r < rest.length; r++) {
+                    int x = mines_left - (component.offset + k) - (rest_offset + r);
+                    if (x >= low && x <= high) {
+                        weight[k] += rest[r] * ways[x - low];
+                    }
+                }
+            }
+
+            assign(component, weight);
+        }
+
+        double total = 0, expected = 0;
+        for (int t = 0; t < prefix[m].length; t++) {
+            int x = mines_left - (prefix_offset[m] + t);
+            if (x >= low && x <= high) {
+                total += prefix[m][t] * ways[x - low];
+                expected += prefix[m][t] * ways[x - low] * x;
+            }
+        }
+        other = unconstrained > 0 && total > 0 ? (float) (expected / total / unconstrained) : Float.NaN;
+    }
+
+    // Approximate combination: each extra mine in a component costs a constant factor, taken from the density of the
+    // unconstrained cells, which is refined a few times.
+    private void combineIndependent(List<Component> components, int mines_left, int unconstrained) {
+        double density = mines_left / (double) Math.max(1, unconstrained + num_frontier);
+        double[][] weights = new double[components.size()][];
+
+        for (int round = 0; round < 4; round++) {
+            double ratio = Math.log(Math.min(1 - 1e-9, Math.max(1e-9, density)) /
+                    (1 - Math.min(1 - 1e-9, Math.max(1e-9, density))));
+            double expected = 0;
+
+            for (int c = 0; c < components.size(); c++) {
+                Component component = components.get(c);
+                int length = component.counts.length;
+
+                // Scale relative to the largest weight so long components don't overflow.
+                double max = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < length; k++) {
+                    if (component.counts[k] > 0) {
+                        max = Math.max(max, Math.log(component.counts[k]) + k * ratio);
+                    }
+                }
+
+                weights[c] = new double[length];
+                double total = 0, mines = 0;
+                for (int k = 0; k < length; k++) {
+                    weights[c][k] = Math.exp(k * ratio - max);
+                    total += component.counts[k] * weights[c][k];
+                    mines += component.counts[k] * weights[c][k] * (component.offset + k);
+                }
+                expected += total > 0 ? mines / total : component.offset;
+            }
+
+            density = unconstrained > 0 ? Math.min(1, Math.max(0, (mines_left - expected) / unconstrained)) : density;
+        }
+
+        for (int c = 0; c < components.size(); c++) {
+            assign(components.get(c), weights[c]);
+        }
+        other = unconstrained > 0 ? (float) density : Float.NaN;
+    }
+
+    // Work out each cell of a component from the weight of each of its mine counts.
+    private void assign(Component component, double[] weight) {
+        int length = component.counts.length;
+
+        double total = 0;
+        for (int k = 0; k < length; k++) {
+            total += component.counts[k] * weight[k];
+        }
+
+        for (int v = 0; v < component.cells.length; v++) {
+            double mines = 0, plain = 0;
+            for (int k = 0; k < length; k++) {
+                mines += component.cell_counts[v * length + k] * weight[k];
+                plain += component.cell_counts[v * length + k];
+            }
+
+            // An inconsistent board leaves no weight at all; fall back on the unweighted counts.
+            double value = total > 0 ? mines / total : plain / Math.max(1e-300, sum(component.counts));
+            list(component.cells[v], (float) Math.min(1, Math.max(0, value)));
+        }
+    }
+
+    private void list(int index, float value) {
+        probability[index] = value;
+        listed[num_listed++] = index;
+    }
+
+    private static double sum(double[] values) {
+        double total = 0;
+        for (double value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    // Product of two count polynomials, scaled so the largest entry is 1.
+    private static double[] convolve(double[] a, double[] b) {
+        double[] result = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != 0) {
+                for (int j = 0; j < b.length; j++) {
+                    result[i + j] += a[i] * b[j];
+                }
+            }
+        }
+
+        double max = 0;
+        for (double value : result) {
+            max = Math.max(max, value);
+        }
+        if (max > 0) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] /= max;
+            }
+        }
+
+        return result;
+    }
+
+    // C(n, x) for x in [low, high], relative to the largest of them. Worked out in logs from the ratio between
+    // neighbouring terms, as the values themselves are far too big for a double on large boards.
+    private static double[] binomials(int n, int low, int high) {
+        if (high < low) {
+            return new double[0];
+        }
+
+        double[] logs = new double[high - low + 1];
+        double max = 0;
+        for (int x = low + 1; x <= high; x++) {
+            logs[x - low] = logs[x - low - 1] + Math.log((n - x + 1) / (double) x);
+            max = Math.max(max, logs[x - low]);
+        }
+
+        for (int i = 0; i < logs.length; i++) {
+            logs[i] = Math.exp(logs[i] - max);
+        }
+        return logs;
+    }
+
+    // Getters
+
+    // Chance that a cell is a mine (0 for revealed cells).
+    public float getProbability(int index) {
+        if (!Float.isNaN(probability[index])) {
+            return probability[index];
+        }
+        return game.getState(index) == State.REVEALED ? 0 : other;
+    }
+
+    // Probability for unrevealed cells that no number touches (NaN if there are none).
+    public float getOther() {
+        return other;
+    }
+
+    // Whether every component was counted and combined exactly.
+    public boolean isExact() {
+        return exact;
+    }
+
+    // Copy the results out, e.g. for the board to draw.
+    public Heatmap getHeatmap() {
+        int[] cells = Arrays.copyOf(listed, num_listed);
+        Arrays.sort(cells);
+        float[] values = new float[num_listed];
+        for (int i = 0; i < num_listed; i++) {
+            values[i] = probability[cells[i]];
+        }
+        return new Heatmap(cells, values, other);
+    }
+}
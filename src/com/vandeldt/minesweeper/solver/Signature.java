@@ -0,0 +1,26 @@
+package com.vandeldt.minesweeper.solver;
+
+import java.util.Arrays;
+
+// Everything that defines a component's problem: its cells and its constraints with the mines they still need. Two
+// components with equal signatures have the same solutions, so a solved one can be reused.
+final class Signature {
+
+    private final int[] data;
+    private final int hash;
+
+    Signature(int[] data) {
+        this.data = data;
+        this.hash = Arrays.hashCode(data);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Signature && Arrays.equals(data, ((Signature) other).data);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,335 @@
+package com.vandeldt.minesweeper.solver;
+
+import com.vandeldt.minesweeper.ChangeSet;
+import com.vandeldt.minesweeper.Game;
+import com.vandeldt.minesweeper.State;
+import com.vandeldt.minesweeper.Topology;
+
+// Finds cells that are certainly safe or certainly mines using only what a player can see: the revealed numbers.
+// Flags placed by the player aren't trusted. Works incrementally: after each action only the revealed cells around what
+// changed are examined again, so the cost follows the size of the change rather than the size of the board.
+public class Solver {
+
+    // What the solver has worked out about an unrevealed cell.
+    static final byte UNKNOWN = 0;
+    static final byte SAFE = 1;
+    static final byte MINE = 2;
+
+    private final Game game;
+    private final Topology topology;
+    private final int board_height, board_width;
+    private final byte[] known;
+    private final int[] known_list;
+    private int num_known = 0;
+
+    // Revealed cells waiting to be examined, as a ring buffer. Each cell is queued at most once at a time.
+    private final int[] work;
+    private final long[] queued;
+    private int work_head = 0, work_size = 0;
+
+    // Deductions, in the order they were made. The heads move past cells that have since been dealt with.
+    private final int[] safe_cells;
+    private int safe_head = 0, num_safe = 0;
+    private final int[] mine_cells;
+    private int mine_head = 0, num_mines = 0;
+
+    // Scratch space for the unknown neighbours of the cells being compared, for the neighbours of a shared one, and
+    // for the neighbours being looked at.
+    private final int[] unknown_a;
+    private final int[] unknown_b;
+    private final int[] sharing;
+    private final int[] neighbours;
+    private int remaining;
+
+    // Constructor
+    public Solver(Game game) {
+        this.game = game;
+        this.topology = game.getTopology();
+        this.board_height = game.getHeight();
+        this.board_width = game.getWidth();
+
+        int max_neighbours = topology.getMaxNeighbours();
+        this.unknown_a = new int[max_neighbours];
+        this.unknown_b = new int[max_neighbours];
+        this.sharing = new int[max_neighbours];
+        this.neighbours = new int[max_neighbours];
+
+        int size = board_height * board_width;
+        this.known = new byte[size];
+        this.known_list = new int[size];
+        this.work = new int[size];
+        this.queued = new long[(size + 63) >>> 6];
+        this.safe_cells = new int[size];
+        this.mine_cells = new int[size];
+
+        rescan();
+    }
+
+    // Follow the changes from one action on the game, re-examining only the revealed cells around them.
+    public void update(ChangeSet changes) {
+        // Start over after a reset, or after going back to an earlier point in the game (see Journal).
+        if (changes.isReset()) {
+            if (changes.getNumRevealed() > 0) {
+                rescan();
+            } else {
+                clear();
+            }
+            return;
+        }
+
+        // Nothing left to solve once the game is over.
+        if (changes.isGameOver()) {
+            return;
+        }
+
+        for (int i = 0; i < changes.size(); i++) {
+            int index = changes.get(i);
+            if (game.getState(index) == State.REVEALED) {
+                enqueue(index);
+                enqueueNeighbours(index);
+            }
+        }
+
+        solve();
+    }
+
+    // Forget everything and examine every revealed cell, e.g. for a game that has been loaded.
+    public void rescan() {
+        clear();
+
+        for (int i = 0; i < board_height * board_width; i++) {
+            if (game.getState(i) == State.REVEALED) {
+                enqueue(i);
+            }
+        }
+
+        solve();
+    }
+
+    // Forget all deductions.
+    private void clear() {
+        for (int i = 0; i < num_known; i++) {
+            known[known_list[i]] = UNKNOWN;
+        }
+        num_known = 0;
+
+        while (work_size > 0) {
+            dequeue();
+        }
+
+        safe_head = num_safe = 0;
+        mine_head = num_mines = 0;
+    }
+
+    // Work through the queue until nothing more can be deduced.
+    private void solve() {
+        while (work_size > 0) {
+            examine(dequeue());
+        }
+    }
+
+    // Look for deductions around one revealed cell, first on its own and then against each nearby revealed cell.
+    private void examine(int a) {
+        int num_a = collect(a, unknown_a);
+        int remaining_a = remaining;
+        if (num_a == 0) {
+            return;
+        }
+
+        // Single cell rules: every unknown neighbour is safe, or every one is a mine.
+        if (remaining_a == 0) {
+            markAll(unknown_a, num_a, SAFE);
+            return;
+        } else if (remaining_a == num_a) {
+            markAll(unknown_a, num_a, MINE);
+            return;
+        }
+
+        // Pair rules against every revealed cell that shares an unknown neighbour (cells sharing several are compared
+        // more than once, which finds nothing new but costs less than remembering them).
+        for (int i = 0; i < num_a; i++) {
+            int count = topology.neighbours(unknown_a[i], sharing);
+            for (int j = 0; j < count; j++) {
+                int b = sharing[j];
+                if (b == a || game.getState(b) != State.REVEALED) {
+                    continue;
+                }
+
+                int num_b = collect(b, unknown_b);
+                if (num_b > 0 && compare(num_a, remaining_a, num_b, remaining)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Compare the unknown neighbours of two cells. If b needs exactly as many more mines than a as it has cells a
+    // doesn't, then those cells are all mines and a's cells that b doesn't have are all safe (and the same the other
+    // way round). This covers one set containing the other as well as partial overlaps. Returns whether anything
+    // was deduced.
+    private boolean compare(int num_a, int remaining_a, int num_b, int remaining_b) {
+        int only_a = num_a - countShared(unknown_a, num_a, unknown_b, num_b);
+        int only_b = num_b - (num_a - only_a);
+
+        if (only_a + only_b == 0) {
+            return false;
+        }
+
+        if (remaining_b - remaining_a == only_b) {
+            markDifference(unknown_b, num_b, unknown_a, num_a, MINE);
+            markDifference(unknown_a, num_a, unknown_b, num_b, SAFE);
+            return true;
+        } else if (remaining_a - remaining_b == only_a) {
+            markDifference(unknown_a, num_a, unknown_b, num_b, MINE);
+            markDifference(unknown_b, num_b, unknown_a, num_a, SAFE);
+            return true;
+        }
+
+        return false;
+    }
+
+    // Fill cells with the unknown neighbours of a revealed cell and set remaining to the mines still to be found
+    // among them. Returns how many unknown neighbours there are.
+    private int collect(int index, int[] cells) {
+        int num_neighbours = topology.neighbours(index, neighbours);
+        int count = 0;
+        remaining = game.getAdjacentMines(index);
+
+        for (int i = 0; i < num_neighbours; i++) {
+            int neighbour = neighbours[i];
+            if (known[neighbour] == MINE) {
+                remaining--;
+            } else if (known[neighbour] == UNKNOWN && game.getState(neighbour) != State.REVEALED) {
+                cells[count++] = neighbour;
+            }
+        }
+
+        return count;
+    }
+
+    private static int countShared(int[] a, int num_a, int[] b, int num_b) {
+        int shared = 0;
+        for (int i = 0; i < num_a; i++) {
+            if (contains(b, num_b, a[i])) {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    private static boolean contains(int[] cells, int count, int index) {
+        for (int i = 0; i < count; i++) {
+            if (cells[i] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void markAll(int[] cells, int count, byte value) {
+        for (int i = 0; i < count; i++) {
+            mark(cells[i], value);
+        }
+    }
+
+    // Mark the cells of one set that aren't in the other.
+    private void markDifference(int[] cells, int count, int[] other, int other_count, byte value) {
+        for (int i = 0; i < count; i++) {
+            if (!contains(other, other_count, cells[i])) {
+                mark(cells[i], value);
+            }
+        }
+    }
+
+    // Record a deduction, and queue the revealed cells around it as they may now lead to more.
+    private void mark(int index, byte value) {
+        if (known[index] != UNKNOWN) {
+            return;
+        }
+
+        known[index] = value;
+        known_list[num_known++] = index;
+
+        if (value == SAFE) {
+            safe_cells[num_safe++] = index;
+        } else {
+            mine_cells[num_mines++] = index;
+        }
+
+        enqueueNeighbours(index);
+    }
+
+    private void enqueueNeighbours(int index) {
+        int count = topology.neighbours(index, neighbours);
+
+        for (int i = 0; i < count; i++) {
+            if (game.getState(neighbours[i]) == State.REVEALED) {
+                enqueue(neighbours[i]);
+            }
+        }
+    }
+
+    private void enqueue(int index) {
+        if ((queued[index >>> 6] & (1L << index)) == 0) {
+            queued[index >>> 6] |= 1L << index;
+            work[(work_head + work_size++) % work.length] = index;
+        }
+    }
+
+    private int dequeue() {
+        int index = work[work_head];
+        work_head = (work_head + 1) % work.length;
+        work_size--;
+        queued[index >>> 6] &= ~(1L << index);
+        return index;
+    }
+
+    // Moves
+
+    // An unrevealed, unflagged cell that is certainly safe (-1 if none is known).
+    public int nextSafe() {
+        while (safe_head < num_safe && game.getState(safe_cells[safe_head]) != State.DEFAULT) {
+            safe_head++;
+        }
+        return safe_head < num_safe ? safe_cells[safe_head] : -1;
+    }
+
+    // An unflagged cell that is certainly a mine (-1 if none is known).
+    public int nextMine() {
+        while (mine_head < num_mines && game.getState(mine_cells[mine_head]) != State.DEFAULT) {
+            mine_head++;
+        }
+        return mine_head < num_mines ? mine_cells[mine_head] : -1;
+    }
+
+    // Auto-play a single move: reveal a safe cell, or failing that flag a mine. Returns whether a move was made. The
+    // solver sees the result through update, like any other action.
+    public boolean step() {
+        int safe = nextSafe();
+        if (safe >= 0) {
+            game.reveal(safe);
+            return true;
+        }
+
+        int mine = nextMine();
+        if (mine >= 0) {
+            game.flag(mine);
+            return true;
+        }
+
+        return false;
+    }
+
+    // Whether a cell is known to be safe or a mine.
+    public boolean isKnownSafe(int index) {
+        return known[index] == SAFE;
+    }
+
+    public boolean isKnownMine(int index) {
+        return known[index] == MINE;
+    }
+
+    public Game getGame() {
+        return game;
+    }
+}